@@ -0,0 +1,76 @@
+import java.util.Random;
+
+/**
+ * Compares the MinScan kernels on random int arrays of the sizes the dense
+ * Prim engine scans, and times that engine on a complete graph.
+ * <p>
+ * Run with and without the Vector API kernel (see the README):
+ * <pre>
+ * java -cp out/src:out/bench MinScanBenchmark
+ * java --add-modules jdk.incubator.vector -cp out/src:out/vector:out/bench MinScanBenchmark
+ * </pre>
+ */
+public class MinScanBenchmark {
+    private static final int[] SIZES = {64, 256, 1024, 4096, 65536};
+    private static final long TARGET_ELEMENTS = 200_000_000L;
+
+    public static void main(String[] args) {
+        System.out.println("Vector kernel: " + (MinScan.isVectorized() ? "enabled" : "not available"));
+        Random random = new Random(37);
+        for (int size : SIZES) {
+            int[] values = new int[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = random.nextInt();
+            }
+            int repeats = (int) (TARGET_ELEMENTS / size);
+            // Warm up both paths before timing
+            time(values, repeats / 4, false);
+            time(values, repeats / 4, true);
+            double scalar = time(values, repeats, true);
+            double selected = time(values, repeats, false);
+            System.out.printf("n=%6d  scalar %6.3f ns/element  MinScan %6.3f ns/element  speedup %.2fx%n",
+                size, scalar, selected, scalar / selected);
+        }
+
+        int vertices = 3000;
+        Graph complete = completeGraph(vertices, random);
+        DensePrimAlgorithm.findMST(complete); // Warm up
+        double best = Double.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            best = Math.min(best, DensePrimAlgorithm.findMST(complete).getExecutionTimeMs());
+        }
+        System.out.printf("Dense Prim, complete graph with %d vertices: %.1f ms (best of 5)%n", vertices, best);
+    }
+
+    /**
+     * @return nanoseconds per scanned element
+     */
+    private static double time(int[] values, int repeats, boolean scalar) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < repeats; r++) {
+            values[r % values.length] ^= 1; // Keep the scan from being hoisted
+            sink += scalar ? MinScan.scalarIndexOfMin(values, 0, values.length)
+                : MinScan.indexOfMin(values, 0, values.length);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.println();
+        }
+        return (double) elapsed / repeats / values.length;
+    }
+
+    private static Graph completeGraph(int vertices, Random random) {
+        java.util.List<String> nodes = new java.util.ArrayList<>();
+        for (int i = 0; i < vertices; i++) {
+            nodes.add("V" + i);
+        }
+        java.util.List<Edge> edges = new java.util.ArrayList<>();
+        for (int i = 0; i < vertices; i++) {
+            for (int j = i + 1; j < vertices; j++) {
+                edges.add(new Edge(nodes.get(i), nodes.get(j), random.nextInt(1_000_000)));
+            }
+        }
+        return new Graph(1, nodes, edges);
+    }
+}
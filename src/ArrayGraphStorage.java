@@ -0,0 +1,199 @@
+/**
+ * On-heap GraphStorage backed by plain int arrays, with weights in an
+ * int[], long[] or double[] depending on the weight type.
+ * The CSR adjacency arrays are built on first use, so engines that only read
+ * the edge arrays (Kruskal) never pay for them.
+ */
+public class ArrayGraphStorage implements GraphStorage {
+    private final int vertexCount;
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private final WeightType weightType;
+    private final int[] intWeights;
+    private final long[] longWeights;
+    private final double[] doubleWeights;
+    private volatile Adjacency adjacency;
+
+    private static final class Adjacency {
+        final int[] start;
+        final int[] vertex;
+        final int[] edge;
+
+        Adjacency(int[] start, int[] vertex, int[] edge) {
+            this.start = start;
+            this.vertex = vertex;
+            this.edge = edge;
+        }
+    }
+
+    /**
+     * Build the storage from parallel edge arrays (which are kept, not copied)
+     */
+    public ArrayGraphStorage(int vertexCount, int[] edgeFrom, int[] edgeTo, int[] edgeWeight) {
+        this(vertexCount, edgeFrom, edgeTo, WeightType.INT, edgeWeight.length, edgeWeight, null, null);
+    }
+
+    public ArrayGraphStorage(int vertexCount, int[] edgeFrom, int[] edgeTo, long[] edgeWeight) {
+        this(vertexCount, edgeFrom, edgeTo, WeightType.LONG, edgeWeight.length, null, edgeWeight, null);
+    }
+
+    public ArrayGraphStorage(int vertexCount, int[] edgeFrom, int[] edgeTo, double[] edgeWeight) {
+        this(vertexCount, edgeFrom, edgeTo, WeightType.DOUBLE, edgeWeight.length, null, null, edgeWeight);
+        for (double weight : edgeWeight) {
+            if (Double.isNaN(weight)) {
+                throw new IllegalArgumentException("Edge weight must be a number");
+            }
+        }
+    }
+
+    private ArrayGraphStorage(int vertexCount, int[] edgeFrom, int[] edgeTo, WeightType weightType,
+                              int weightCount, int[] intWeights, long[] longWeights, double[] doubleWeights) {
+        int edgeCount = edgeFrom.length;
+        if (edgeTo.length != edgeCount || weightCount != edgeCount) {
+            throw new IllegalArgumentException("Edge arrays must have the same length");
+        }
+        this.vertexCount = vertexCount;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+        this.weightType = weightType;
+        this.intWeights = intWeights;
+        this.longWeights = longWeights;
+        this.doubleWeights = doubleWeights;
+        for (int e = 0; e < edgeCount; e++) {
+            checkVertex(edgeFrom[e]);
+            checkVertex(edgeTo[e]);
+        }
+    }
+
+    private Adjacency adjacency() {
+        Adjacency built = adjacency;
+        if (built == null) {
+            synchronized (this) {
+                built = adjacency;
+                if (built == null) {
+                    built = buildAdjacency();
+                    adjacency = built;
+                }
+            }
+        }
+        return built;
+    }
+
+    private Adjacency buildAdjacency() {
+        int edgeCount = edgeFrom.length;
+
+        // Count degrees, then turn them into CSR offsets
+        int[] adjacencyStart = new int[vertexCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            adjacencyStart[edgeFrom[e] + 1]++;
+            adjacencyStart[edgeTo[e] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            adjacencyStart[v + 1] += adjacencyStart[v];
+        }
+
+        // Fill both directions of every edge, in input order
+        int[] adjacentVertex = new int[2 * edgeCount];
+        int[] adjacentEdge = new int[2 * edgeCount];
+        int[] next = new int[vertexCount];
+        System.arraycopy(adjacencyStart, 0, next, 0, vertexCount);
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = next[edgeFrom[e]]++;
+            adjacentVertex[slot] = edgeTo[e];
+            adjacentEdge[slot] = e;
+
+            slot = next[edgeTo[e]]++;
+            adjacentVertex[slot] = edgeFrom[e];
+            adjacentEdge[slot] = e;
+        }
+        return new Adjacency(adjacencyStart, adjacentVertex, adjacentEdge);
+    }
+
+    private void checkVertex(int vertex) {
+        if (vertex < 0 || vertex >= vertexCount) {
+            throw new IllegalArgumentException("Edge endpoint out of range: " + vertex);
+        }
+    }
+
+    @Override
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return edgeFrom.length;
+    }
+
+    @Override
+    public int getEdgeFrom(int edge) {
+        return edgeFrom[edge];
+    }
+
+    @Override
+    public int getEdgeTo(int edge) {
+        return edgeTo[edge];
+    }
+
+    @Override
+    public WeightType getWeightType() {
+        return weightType;
+    }
+
+    @Override
+    public int getEdgeWeight(int edge) {
+        if (intWeights == null) {
+            throw new IllegalStateException("Graph weights are " + weightType + ", not INT");
+        }
+        return intWeights[edge];
+    }
+
+    @Override
+    public long getEdgeWeightLong(int edge) {
+        if (intWeights != null) {
+            return intWeights[edge];
+        }
+        if (longWeights == null) {
+            throw new IllegalStateException("Graph weights are DOUBLE, not integers");
+        }
+        return longWeights[edge];
+    }
+
+    @Override
+    public double getEdgeWeightDouble(int edge) {
+        if (doubleWeights != null) {
+            return doubleWeights[edge];
+        }
+        return getEdgeWeightLong(edge);
+    }
+
+    @Override
+    public boolean isAdjacencyBuilt() {
+        return adjacency != null;
+    }
+
+    @Override
+    public int getAdjacencyStart(int vertex) {
+        return adjacency().start[vertex];
+    }
+
+    @Override
+    public int getAdjacencyEnd(int vertex) {
+        return adjacency().start[vertex + 1];
+    }
+
+    @Override
+    public int getAdjacentVertex(int slot) {
+        return adjacency().vertex[slot];
+    }
+
+    @Override
+    public int getAdjacentEdge(int slot) {
+        return adjacency().edge[slot];
+    }
+
+    @Override
+    public void close() {
+        // Heap arrays are reclaimed by the garbage collector
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Staged batch execution: parse -> compute -> write.
+ * A parser thread streams graphs from the input file into a bounded queue,
+ * a pool of workers computes results, and the calling thread hands results to
+ * the output stage in input order. Parsing, computation and output overlap, and
+ * at most queueDepth graphs (plus the one being parsed and those kept in the
+ * GraphCache for delta input) are in memory at once.
+ * A graph built from a delta is only computed once its base graph's result
+ * is, so that the base's MST can be reused.
+ */
+public class BatchPipeline<R> {
+    private final int queueDepth;
+    private final int workerCount;
+
+    /**
+     * Computes the result for a single graph (runs on a worker thread)
+     */
+    public interface GraphTask<R> {
+        R compute(Graph graph) throws Exception;
+    }
+
+    /**
+     * Consumes results in input order (runs on the calling thread)
+     */
+    public interface ResultSink<R> {
+        void accept(Graph graph, R result) throws IOException;
+    }
+
+    private static class Pending<R> {
+        final Graph graph;
+        final Future<R> result;
+
+        Pending(Graph graph, Future<R> result) {
+            this.graph = graph;
+            this.result = result;
+        }
+    }
+
+    public BatchPipeline(int queueDepth, int workerCount) {
+        if (queueDepth < 1 || workerCount < 1) {
+            throw new IllegalArgumentException("Queue depth and worker count must be positive");
+        }
+        this.queueDepth = queueDepth;
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Run the pipeline over all graphs in the input file
+     * @return number of graphs processed
+     */
+    public int run(String inputFile, GraphTask<R> task, ResultSink<R> sink) throws IOException {
+        return run(inputFile, new GraphCache(), task, sink);
+    }
+
+    /**
+     * Run the pipeline, resolving delta input against the given cache
+     * @return number of graphs processed
+     */
+    public int run(String inputFile, GraphCache cache, GraphTask<R> task, ResultSink<R> sink) throws IOException {
+        BlockingQueue<Pending<R>> queue = new ArrayBlockingQueue<>(queueDepth);
+        Pending<R> endOfInput = new Pending<>(null, null);
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+        ExecutorService parser = Executors.newSingleThreadExecutor();
+        // Results not yet handed to the sink, for deltas of those graphs
+        Map<Graph, Future<R>> inFlight = Collections.synchronizedMap(new IdentityHashMap<>());
+
+        Future<?> parsing = parser.submit(() -> {
+            try {
+                SimpleJSONParser.parseGraphs(inputFile, graph -> {
+                    GraphDelta.Patch patch = cache.getPatch(graph);
+                    Future<R> base = patch == null ? null : inFlight.get(patch.getBase());
+                    // The base was submitted first, so it has started by the time this waits
+                    Future<R> result = workers.submit(() -> {
+                        if (base != null) {
+                            awaitBase(base);
+                        }
+                        return task.compute(graph);
+                    });
+                    inFlight.put(graph, result);
+                    try {
+                        queue.put(new Pending<>(graph, result)); // Blocks while the queue is full
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Parsing interrupted", e);
+                    }
+                }, cache);
+            } finally {
+                queue.put(endOfInput);
+            }
+            return null;
+        });
+
+        int processed = 0;
+        try {
+            while (true) {
+                Pending<R> pending = queue.take();
+                if (pending == endOfInput) break;
+
+                R result = await(pending.result, "Failed to process graph " + pending.graph.getId());
+                inFlight.remove(pending.graph); // Done, so deltas parsed from now on need not wait
+                sink.accept(pending.graph, result);
+                processed++;
+            }
+            await(parsing, "Failed to parse " + inputFile);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Pipeline interrupted", e);
+        } finally {
+            parser.shutdownNow();
+            workers.shutdownNow();
+        }
+
+        return processed;
+    }
+
+    /**
+     * Wait for the base graph's result; if it failed, the delta is still
+     * computed (from scratch)
+     */
+    private static void awaitBase(Future<?> base) throws InterruptedException {
+        try {
+            base.get();
+        } catch (ExecutionException e) {
+            // Reported with the base graph
+        }
+    }
+
+    private static <T> T await(Future<T> future, String message) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(message, cause);
+        }
+    }
+}
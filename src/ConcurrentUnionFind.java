@@ -0,0 +1,106 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock-free Union-Find (Disjoint Set Union) over integer vertex ids.
+ * Safe for concurrent find/union from multiple threads: parent links are
+ * updated only with CAS, find uses path halving, and roots are linked by a
+ * pseudo-random priority instead of rank so no second array has to be kept
+ * consistent with the first.
+ */
+public class ConcurrentUnionFind {
+    private final AtomicIntegerArray parent;
+    private final AtomicInteger components;
+
+    public ConcurrentUnionFind(int size) {
+        parent = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            parent.set(i, i);
+        }
+        components = new AtomicInteger(size);
+    }
+
+    /**
+     * Find the root of the set containing the given element (with path halving)
+     */
+    public int find(int node) {
+        while (true) {
+            int p = parent.get(node);
+            if (p == node) {
+                return node;
+            }
+            int grandParent = parent.get(p);
+            if (p != grandParent) {
+                // Losing this race is harmless, another thread shortened the path
+                parent.compareAndSet(node, p, grandParent);
+            }
+            node = grandParent;
+        }
+    }
+
+    /**
+     * Union the sets containing the given elements (randomized linking)
+     * @return true if the sets were disjoint and have been merged by this call
+     */
+    public boolean union(int node1, int node2) {
+        while (true) {
+            int root1 = find(node1);
+            int root2 = find(node2);
+            if (root1 == root2) {
+                return false;
+            }
+
+            // Always link the lower priority root below the higher one, so
+            // concurrent links can never form a cycle
+            if (priority(root1) > priority(root2)) {
+                int tmp = root1;
+                root1 = root2;
+                root2 = tmp;
+            }
+
+            if (parent.compareAndSet(root1, root1, root2)) {
+                components.decrementAndGet();
+                return true;
+            }
+            // root1 was linked by another thread in the meantime, retry
+        }
+    }
+
+    /**
+     * Check whether two elements are currently in the same set
+     */
+    public boolean sameSet(int node1, int node2) {
+        while (true) {
+            int root1 = find(node1);
+            int root2 = find(node2);
+            if (root1 == root2) {
+                return true;
+            }
+            // root1 still being a root means the answer was stable
+            if (parent.get(root1) == root1) {
+                return false;
+            }
+        }
+    }
+
+    public int getComponentCount() {
+        return components.get();
+    }
+
+    public int size() {
+        return parent.length();
+    }
+
+    /**
+     * Bijective integer hash (murmur3 finalizer), gives every element a
+     * distinct random-looking priority without storing one
+     */
+    private static int priority(int x) {
+        x ^= x >>> 16;
+        x *= 0x85ebca6b;
+        x ^= x >>> 13;
+        x *= 0xc2b2ae35;
+        x ^= x >>> 16;
+        return x;
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.*;
+
+/**
+ * Array-based Prim's algorithm for dense graphs, O(V^2 + E) without a heap.
+ * Every vertex outside the tree keeps the canonical rank of its lightest edge
+ * into the tree in a flat int array, and each step picks the minimum with a
+ * MinScan over that array. Vertices that join the tree are swapped to the end
+ * so scans only cover the vertices still outside. When E approaches V^2 this
+ * beats the heap-based variants, which pay a log factor per edge.
+ */
+public class DensePrimAlgorithm {
+
+    /**
+     * Find MST using the array-based variant of Prim's algorithm
+     * @param graph Input graph
+     * @return MSTResult containing MST edges and statistics
+     */
+    public static MSTResult findMST(Graph graph) {
+        return findMST(graph, null);
+    }
+
+    /**
+     * Find MST with the array-based Prim, checking the control for deadline
+     * and cancellation between rows (about every CHECK_INTERVAL scanned slots)
+     * @param control deadline, cancellation and progress, or null
+     * @throws MSTCancelledException if the control stopped the run
+     */
+    public static MSTResult findMST(Graph graph, MSTControl control) {
+        long startTime = System.nanoTime();
+        int operationsCount = 0;
+
+        GraphStorage storage = graph.getStorage();
+        int vertexCount = storage.getVertexCount();
+
+        if (vertexCount == 0 || !graph.isConnected()) {
+            return new MSTResult(new ArrayList<>(), 0, 0, 0);
+        }
+
+        if (control != null) {
+            control.checkpoint(0, vertexCount);
+        }
+        EdgeOrder order = graph.getEdgeOrder();
+        if (control != null) {
+            control.checkpoint(0, vertexCount);
+        }
+
+        // bestRank[i] belongs to vertex outside[i]; position[v] is the inverse
+        int[] bestRank = new int[vertexCount];
+        int[] outside = new int[vertexCount];
+        int[] position = new int[vertexCount];
+        Arrays.fill(bestRank, Integer.MAX_VALUE);
+        for (int v = 0; v < vertexCount; v++) {
+            outside[v] = v;
+            position[v] = v;
+        }
+        int outsideCount = vertexCount;
+
+        int[] treeRanks = new int[vertexCount - 1];
+        int treeSize = 0;
+
+        // Start from the first node
+        int current = 0;
+        outsideCount = remove(bestRank, outside, position, position[current], outsideCount);
+        operationsCount++; // Add operation
+
+        long edgesScanned = 0;
+        int countdown = MSTControl.CHECK_INTERVAL;
+        while (treeSize < vertexCount - 1) {
+            // A row scans the vertex's edges and the outside vertices
+            int start = storage.getAdjacencyStart(current);
+            int end = storage.getAdjacencyEnd(current);
+            edgesScanned += end - start;
+            if (control != null && (countdown -= end - start + outsideCount) <= 0) {
+                countdown = MSTControl.CHECK_INTERVAL;
+                control.checkpoint(edgesScanned, vertexCount - treeSize);
+            }
+
+            // Relax the edges of the vertex that just joined
+            for (int slot = start; slot < end; slot++) {
+                int index = position[storage.getAdjacentVertex(slot)];
+                operationsCount++; // Array lookup
+                if (index < outsideCount) {
+                    int rank = order.getRank(storage.getAdjacentEdge(slot));
+                    if (rank < bestRank[index]) {
+                        bestRank[index] = rank;
+                        operationsCount++; // Key update
+                    }
+                }
+            }
+
+            int next = MinScan.indexOfMin(bestRank, 0, outsideCount);
+            operationsCount += outsideCount; // Scan
+            treeRanks[treeSize++] = bestRank[next];
+            current = outside[next];
+            outsideCount = remove(bestRank, outside, position, next, outsideCount);
+            operationsCount += 2; // Array add + array update
+        }
+
+        // Report tree edges in canonical order, like Kruskal
+        Arrays.sort(treeRanks, 0, treeSize);
+        int[] mstEdges = new int[treeSize];
+        for (int i = 0; i < treeSize; i++) {
+            mstEdges[i] = order.getEdge(treeRanks[i]);
+        }
+
+        return MSTResult.forTree(graph, mstEdges, treeSize, operationsCount, startTime);
+    }
+
+    /**
+     * Swap the entry at index with the last outside entry and shrink the range
+     * @return the new number of outside vertices
+     */
+    private static int remove(int[] bestRank, int[] outside, int[] position, int index, int outsideCount) {
+        int last = outsideCount - 1;
+        int vertex = outside[index];
+        int lastVertex = outside[last];
+
+        outside[index] = lastVertex;
+        bestRank[index] = bestRank[last];
+        position[lastVertex] = index;
+
+        outside[last] = vertex;
+        bestRank[last] = Integer.MAX_VALUE;
+        position[vertex] = last;
+        return last;
+    }
+}
@@ -1,17 +1,37 @@
 /**
- * Represents an edge in a weighted graph
+ * Represents an edge in a weighted graph.
+ * Integer weights are stored as int or long (whichever fits), fractional
+ * weights as double; see WeightType. Equality compares weights by value, so an
+ * edge rebuilt from the DOUBLE storage of a mixed-weight graph still equals the
+ * integer edge it came from.
  */
 public class Edge implements Comparable<Edge> {
     private String from;
     private String to;
-    private int weight;
+    private WeightType weightType;
+    private long weight; // Integer value, or raw double bits for DOUBLE weights
 
     public Edge(String from, String to, int weight) {
+        this(from, to, (long) weight);
+    }
+
+    public Edge(String from, String to, long weight) {
         this.from = from;
         this.to = to;
+        this.weightType = WeightType.of(weight);
         this.weight = weight;
     }
 
+    public Edge(String from, String to, double weight) {
+        if (Double.isNaN(weight)) {
+            throw new IllegalArgumentException("Edge weight must be a number");
+        }
+        this.from = from;
+        this.to = to;
+        this.weightType = WeightType.DOUBLE;
+        this.weight = Double.doubleToLongBits(weight + 0.0); // + 0.0 folds -0.0 into 0.0
+    }
+
     public String getFrom() {
         return from;
     }
@@ -20,18 +40,103 @@ public class Edge implements Comparable<Edge> {
         return to;
     }
 
+    public WeightType getWeightType() {
+        return weightType;
+    }
+
+    /**
+     * Weight of an INT edge
+     * @throws IllegalStateException if the weight does not fit in an int
+     */
     public int getWeight() {
+        if (weightType != WeightType.INT) {
+            throw new IllegalStateException("Edge weight is not an int: " + formatWeight());
+        }
+        return (int) weight;
+    }
+
+    /**
+     * Weight of an INT or LONG edge
+     * @throws IllegalStateException for DOUBLE weights
+     */
+    public long getLongWeight() {
+        if (weightType == WeightType.DOUBLE) {
+            throw new IllegalStateException("Edge weight is not an integer: " + formatWeight());
+        }
         return weight;
     }
 
+    /**
+     * Weight of any edge as a double
+     */
+    public double getDoubleWeight() {
+        return weightType == WeightType.DOUBLE ? Double.longBitsToDouble(weight) : weight;
+    }
+
+    /**
+     * Same edge in the opposite direction
+     */
+    public Edge reversed() {
+        Edge edge = new Edge(to, from, 0);
+        edge.weightType = weightType;
+        edge.weight = weight;
+        return edge;
+    }
+
+    public String formatWeight() {
+        return weightType == WeightType.DOUBLE ? Double.toString(getDoubleWeight()) : Long.toString(weight);
+    }
+
+    /**
+     * Total order: by weight value, then by the lexicographically smaller
+     * endpoint name, then by the larger one. Direction does not matter,
+     * consistent with equals.
+     * <p>
+     * This is not the canonical order the engines use: EdgeOrder breaks weight
+     * ties by node index and input position, which only the graph knows. To
+     * order edges as the engines do, sort their indices with EdgeOrder.compare
+     * on the graph's storage.
+     */
     @Override
     public int compareTo(Edge other) {
-        return Integer.compare(this.weight, other.weight);
+        int result = compareWeight(other);
+        if (result == 0) {
+            result = minEndpoint().compareTo(other.minEndpoint());
+        }
+        if (result == 0) {
+            result = maxEndpoint().compareTo(other.maxEndpoint());
+        }
+        return result;
+    }
+
+    private int compareWeight(Edge other) {
+        boolean fractional = weightType == WeightType.DOUBLE;
+        boolean otherFractional = other.weightType == WeightType.DOUBLE;
+        if (!fractional && !otherFractional) {
+            return Long.compare(weight, other.weight);
+        }
+        int result = Double.compare(getDoubleWeight(), other.getDoubleWeight());
+        if (result != 0 || fractional == otherFractional) {
+            return result;
+        }
+        // Equal as doubles, but a long above 2^53 may still differ from the double
+        double value = fractional ? getDoubleWeight() : other.getDoubleWeight();
+        long integer = fractional ? other.weight : weight;
+        int byValue = isExactLong(value) ? Long.compare((long) value, integer) : 1; // Only 2^63 is out of range
+        return fractional ? byValue : -byValue;
+    }
+
+    private String minEndpoint() {
+        return from.compareTo(to) <= 0 ? from : to;
+    }
+
+    private String maxEndpoint() {
+        return from.compareTo(to) <= 0 ? to : from;
     }
 
     @Override
     public String toString() {
-        return String.format("{from: %s, to: %s, weight: %d}", from, to, weight);
+        return String.format("{from: %s, to: %s, weight: %s}", from, to, formatWeight());
     }
 
     @Override
@@ -39,7 +144,7 @@ public class Edge implements Comparable<Edge> {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Edge edge = (Edge) obj;
-        return weight == edge.weight &&
+        return sameWeight(edge) &&
                ((from.equals(edge.from) && to.equals(edge.to)) ||
                 (from.equals(edge.to) && to.equals(edge.from)));
     }
@@ -49,6 +154,35 @@ public class Edge implements Comparable<Edge> {
         // Ensure undirected edge comparison
         int node1 = from.compareTo(to) < 0 ? from.hashCode() : to.hashCode();
         int node2 = from.compareTo(to) < 0 ? to.hashCode() : from.hashCode();
-        return 31 * (31 * node1 + node2) + weight;
+        return 31 * (31 * node1 + node2) + Long.hashCode(weightKey());
+    }
+
+    /**
+     * Equal weight values, whatever the weight types: a DOUBLE weight equals
+     * an integer weight if it is exactly that integer
+     */
+    private boolean sameWeight(Edge other) {
+        if ((weightType == WeightType.DOUBLE) == (other.weightType == WeightType.DOUBLE)) {
+            return weight == other.weight; // Both integers, or both raw double bits
+        }
+        Edge fractional = weightType == WeightType.DOUBLE ? this : other;
+        Edge integer = fractional == this ? other : this;
+        double value = fractional.getDoubleWeight();
+        return isExactLong(value) && (long) value == integer.weight;
+    }
+
+    /**
+     * Weight in a form that is equal for equal weights: the integer value if
+     * there is one, otherwise the double bits
+     */
+    long weightKey() {
+        if (weightType == WeightType.DOUBLE && isExactLong(getDoubleWeight())) {
+            return (long) getDoubleWeight();
+        }
+        return weight;
+    }
+
+    private static boolean isExactLong(double value) {
+        return value == Math.rint(value) && value >= -0x1p63 && value < 0x1p63;
     }
 }
@@ -0,0 +1,156 @@
+import java.util.Arrays;
+
+/**
+ * Canonical total order on the edges of a graph: by weight, then by the smaller
+ * endpoint id, then by the larger endpoint id, then by input position.
+ * Every MST engine breaks ties with this order, which makes the MST unique, so
+ * identical inputs give the same tree regardless of engine or thread count.
+ */
+public class EdgeOrder {
+    private final int[] sorted;
+    private final int[] rank;
+
+    public EdgeOrder(GraphStorage storage) {
+        int edgeCount = storage.getEdgeCount();
+        int[] edges = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            edges[e] = e;
+        }
+        sorted = sort(storage, edges, edgeCount);
+        rank = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            rank[sorted[i]] = i;
+        }
+    }
+
+    /**
+     * The first count of the given edges (distinct, in any order) in canonical
+     * order, without comparator calls or boxing. For callers that order only a
+     * subset of the edges; takes O(V + count log count).
+     */
+    public static int[] sort(GraphStorage storage, int[] edges, int count) {
+        // Ascending indices, then two stable counting sorts give (smaller id, larger id, position) order
+        int[] byPair = Arrays.copyOf(edges, count);
+        Arrays.sort(byPair);
+        byPair = sortByEndpoint(storage, byPair, false);
+        byPair = sortByEndpoint(storage, byPair, true);
+
+        // One primitive sort by (weight, position in the pair order) finishes the job.
+        // Int weights fit next to the position in a long key; wider weights are
+        // first replaced by their rank among the distinct weights of the edges.
+        long[] keys = new long[count];
+        switch (storage.getWeightType()) {
+            case INT:
+                for (int i = 0; i < count; i++) {
+                    keys[i] = ((long) storage.getEdgeWeight(byPair[i]) << 32) | i;
+                }
+                break;
+            case LONG: {
+                long[] weights = new long[count];
+                for (int i = 0; i < count; i++) {
+                    weights[i] = storage.getEdgeWeightLong(byPair[i]);
+                }
+                packWeightRanks(weights, keys);
+                break;
+            }
+            default: {
+                long[] weights = new long[count];
+                for (int i = 0; i < count; i++) {
+                    weights[i] = sortableBits(storage.getEdgeWeightDouble(byPair[i]));
+                }
+                packWeightRanks(weights, keys);
+                break;
+            }
+        }
+        Arrays.parallelSort(keys); // Sequential below the JDK's parallel threshold
+
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = byPair[(int) keys[i]];
+        }
+        return result;
+    }
+
+    private static void packWeightRanks(long[] weights, long[] keys) {
+        long[] distinct = weights.clone();
+        Arrays.sort(distinct);
+        int distinctCount = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (i == 0 || distinct[i] != distinct[distinctCount - 1]) {
+                distinct[distinctCount++] = distinct[i];
+            }
+        }
+        for (int i = 0; i < weights.length; i++) {
+            long rank = Arrays.binarySearch(distinct, 0, distinctCount, weights[i]);
+            keys[i] = (rank << 32) | i;
+        }
+    }
+
+    /**
+     * Long whose signed order matches Double.compare order of the given double
+     */
+    private static long sortableBits(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    private static int[] sortByEndpoint(GraphStorage storage, int[] edges, boolean smaller) {
+        int[] start = new int[storage.getVertexCount() + 1];
+        for (int edge : edges) {
+            start[endpoint(storage, edge, smaller) + 1]++;
+        }
+        for (int v = 0; v < storage.getVertexCount(); v++) {
+            start[v + 1] += start[v];
+        }
+
+        int[] result = new int[edges.length];
+        for (int edge : edges) {
+            result[start[endpoint(storage, edge, smaller)]++] = edge;
+        }
+        return result;
+    }
+
+    private static int endpoint(GraphStorage storage, int edge, boolean smaller) {
+        int from = storage.getEdgeFrom(edge);
+        int to = storage.getEdgeTo(edge);
+        return smaller == (from < to) ? from : to;
+    }
+
+    /**
+     * Canonical order of two edges of the same storage, computed directly from
+     * the edge arrays. For engines that compare few edges and do not want to
+     * pay for sorting all of them.
+     */
+    public static int compare(GraphStorage storage, int edge1, int edge2) {
+        int byWeight = storage.getWeightType() == WeightType.DOUBLE
+            ? Double.compare(storage.getEdgeWeightDouble(edge1), storage.getEdgeWeightDouble(edge2))
+            : Long.compare(storage.getEdgeWeightLong(edge1), storage.getEdgeWeightLong(edge2));
+        if (byWeight != 0) {
+            return byWeight;
+        }
+        int byMin = Integer.compare(endpoint(storage, edge1, true), endpoint(storage, edge2, true));
+        if (byMin != 0) {
+            return byMin;
+        }
+        int byMax = Integer.compare(endpoint(storage, edge1, false), endpoint(storage, edge2, false));
+        return byMax != 0 ? byMax : Integer.compare(edge1, edge2);
+    }
+
+    /**
+     * Edge index at the given position of the canonical order
+     */
+    public int getEdge(int position) {
+        return sorted[position];
+    }
+
+    /**
+     * Position of the given edge in the canonical order
+     */
+    public int getRank(int edge) {
+        return rank[edge];
+    }
+
+    public int size() {
+        return sorted.length;
+    }
+}
@@ -0,0 +1,294 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Kruskal's algorithm for graphs whose canonical edge order does not fit in
+ * memory. Edges are sorted in runs of a fixed size, each run is written to a
+ * temporary file as edge indices, and the runs are merged while the tree is
+ * built. At most MERGE_FAN_IN runs are open at a time: if there are more,
+ * they are first merged into longer runs in as many passes as needed. The
+ * heap then only holds the Union-Find, the tree, the run being sorted and
+ * the buffers of one merge (WORKING_BYTES), independent of E, and so is the
+ * number of open files. Works best on an off-heap or mapped storage, since
+ * sorting and merging read edge weights by index.
+ */
+public class ExternalKruskalAlgorithm {
+
+    /**
+     * Edges sorted in memory at a time
+     */
+    public static final int DEFAULT_RUN_EDGES = 1 << 16;
+
+    /**
+     * Runs merged at once
+     */
+    public static final int MERGE_FAN_IN = 64;
+
+    /**
+     * Read/write buffer per run file
+     */
+    private static final int BUFFER_BYTES = 8192;
+
+    /**
+     * Heap used besides the per-vertex arrays with the default run size: the
+     * run being sorted (boxed indices) or the buffers of one merge, whichever
+     * is larger
+     */
+    public static final long WORKING_BYTES = Math.max(20L * DEFAULT_RUN_EDGES,
+        (MERGE_FAN_IN + 1L) * (BUFFER_BYTES + 128));
+
+    public static MSTResult findMST(Graph graph) {
+        return findMST(graph, DEFAULT_RUN_EDGES, null, null);
+    }
+
+    /**
+     * Find MST with Kruskal's algorithm over an external merge sort, checking
+     * the control after every run and merge and during the final merge
+     * @param control deadline, cancellation and progress, or null
+     * @throws MSTCancelledException if the control stopped the run
+     * @throws UncheckedIOException if the run files cannot be written or read
+     */
+    public static MSTResult findMST(Graph graph, MSTControl control) {
+        return findMST(graph, DEFAULT_RUN_EDGES, null, control);
+    }
+
+    public static MSTResult findMST(Graph graph, int runEdges, Path tempDir) {
+        return findMST(graph, runEdges, tempDir, null);
+    }
+
+    /**
+     * Find MST with Kruskal's algorithm over an external merge sort
+     * @param graph Input graph
+     * @param runEdges edges per sorted run
+     * @param tempDir directory for the run files, or null for the system default
+     * @param control deadline, cancellation and progress, or null
+     * @return MSTResult containing MST edges and statistics
+     * @throws MSTCancelledException if the control stopped the run
+     * @throws UncheckedIOException if the run files cannot be written or read
+     */
+    public static MSTResult findMST(Graph graph, int runEdges, Path tempDir, MSTControl control) {
+        if (runEdges < 1) {
+            throw new IllegalArgumentException("Run size must be positive: " + runEdges);
+        }
+        long startTime = System.nanoTime();
+        int operationsCount = 0;
+
+        GraphStorage storage = graph.getStorage();
+        int vertexCount = storage.getVertexCount();
+        int edgeCount = storage.getEdgeCount();
+
+        if (vertexCount == 0 || !graph.isConnected()) {
+            return new MSTResult(new ArrayList<>(), 0, 0, 0);
+        }
+
+        if (control != null) {
+            control.checkpoint(0, vertexCount);
+        }
+        Comparator<Integer> order = (a, b) -> EdgeOrder.compare(storage, a, b);
+        List<Path> files = new ArrayList<>();
+        try {
+            // Sorted runs
+            List<RunFile> runs = new ArrayList<>();
+            Integer[] chunk = new Integer[Math.min(runEdges, edgeCount)];
+            for (int first = 0; first < edgeCount; first += runEdges) {
+                int size = Math.min(runEdges, edgeCount - first);
+                for (int i = 0; i < size; i++) {
+                    chunk[i] = first + i;
+                }
+                Arrays.sort(chunk, 0, size, order);
+                operationsCount += size * (int) (Math.log(size + 1) / Math.log(2)); // Sort complexity
+
+                Path file = createRunFile(tempDir, files);
+                try (DataOutputStream out = openOutput(file)) {
+                    for (int i = 0; i < size; i++) {
+                        out.writeInt(chunk[i]);
+                    }
+                }
+                runs.add(new RunFile(file, size));
+                if (control != null) {
+                    control.checkpoint(first + size, vertexCount);
+                }
+            }
+            int sortedRuns = runs.size();
+            chunk = null;
+
+            // Merge groups of runs into longer ones until one merge can take them all
+            long mergePasses = 0;
+            while (runs.size() > MERGE_FAN_IN) {
+                List<RunFile> merged = new ArrayList<>();
+                for (int first = 0; first < runs.size(); first += MERGE_FAN_IN) {
+                    List<RunFile> group = runs.subList(first, Math.min(first + MERGE_FAN_IN, runs.size()));
+                    if (group.size() == 1) {
+                        merged.add(group.get(0));
+                        continue;
+                    }
+                    Path file = createRunFile(tempDir, files);
+                    int size = 0;
+                    try (Merge merge = new Merge(storage, group); DataOutputStream out = openOutput(file)) {
+                        for (int edge = merge.next(); edge != -1; edge = merge.next()) {
+                            out.writeInt(edge);
+                            size++;
+                        }
+                    }
+                    operationsCount += 2 * size; // Heap extraction + write
+                    for (RunFile run : group) {
+                        Files.deleteIfExists(run.file);
+                    }
+                    merged.add(new RunFile(file, size));
+                    if (control != null) {
+                        control.checkpoint(edgeCount, vertexCount);
+                    }
+                }
+                runs = merged;
+                mergePasses++;
+            }
+
+            // Merge the remaining runs in canonical order and build the tree on the fly
+            UnionFind uf = new UnionFind(vertexCount);
+            int[] mstEdges = new int[vertexCount - 1];
+            int mstSize = 0;
+            long merged = 0;
+            int countdown = MSTControl.CHECK_INTERVAL;
+            try (Merge merge = new Merge(storage, runs)) {
+                for (int edge = merge.next(); edge != -1 && mstSize < vertexCount - 1; edge = merge.next()) {
+                    if (control != null && --countdown == 0) {
+                        countdown = MSTControl.CHECK_INTERVAL;
+                        control.checkpoint(merged, vertexCount - mstSize);
+                    }
+                    merged++;
+                    operationsCount += 2; // Heap extraction + iteration
+                    if (uf.union(storage.getEdgeFrom(edge), storage.getEdgeTo(edge))) {
+                        mstEdges[mstSize++] = edge;
+                        operationsCount++; // Array add
+                    }
+                }
+            }
+            operationsCount += uf.getOperationsCount();
+
+            MSTResult result = MSTResult.forTree(graph, mstEdges, mstSize, operationsCount, startTime);
+            result.putMetric("sorted_runs", sortedRuns);
+            result.putMetric("merge_passes", mergePasses);
+            result.putMetric("spilled_bytes", 4L * edgeCount * (1 + mergePasses));
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("External sort failed: " + e.getMessage(), e);
+        } finally {
+            for (Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // Left in the temp directory
+                }
+            }
+        }
+    }
+
+    private static Path createRunFile(Path tempDir, List<Path> files) throws IOException {
+        Path file = tempDir == null ? Files.createTempFile("mst-run", ".bin")
+            : Files.createTempFile(tempDir, "mst-run", ".bin");
+        files.add(file);
+        return file;
+    }
+
+    private static DataOutputStream openOutput(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_BYTES));
+    }
+
+    /**
+     * A sorted run on disk
+     */
+    private static final class RunFile {
+        final Path file;
+        final int size;
+
+        RunFile(Path file, int size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
+
+    /**
+     * K-way merge of sorted runs in canonical edge order, holding one open
+     * reader per run
+     */
+    private static final class Merge implements Closeable {
+        private final List<Run> readers = new ArrayList<>();
+        private final PriorityQueue<Run> queue;
+
+        Merge(GraphStorage storage, List<RunFile> runs) throws IOException {
+            queue = new PriorityQueue<>(Math.max(runs.size(), 1),
+                (a, b) -> EdgeOrder.compare(storage, a.current, b.current));
+            try {
+                for (RunFile run : runs) {
+                    Run reader = new Run(run.file, run.size);
+                    readers.add(reader);
+                    if (reader.advance()) {
+                        queue.add(reader);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return the next edge, or -1 once all runs are exhausted
+         */
+        int next() throws IOException {
+            Run run = queue.poll();
+            if (run == null) {
+                return -1;
+            }
+            int edge = run.current;
+            if (run.advance()) {
+                queue.add(run);
+            }
+            return edge;
+        }
+
+        @Override
+        public void close() {
+            for (Run reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Sequential reader over one sorted run file
+     */
+    private static final class Run {
+        private final DataInputStream in;
+        private int remaining;
+        int current;
+
+        Run(Path file, int size) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_BYTES));
+            this.remaining = size;
+        }
+
+        /**
+         * Read the next edge into current
+         * @return false if the run is exhausted
+         */
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            current = in.readInt();
+            return true;
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Nothing left to read
+            }
+        }
+    }
+}
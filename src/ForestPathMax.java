@@ -0,0 +1,188 @@
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Batched maximum-edge queries on the paths of a forest, answered offline in
+ * one pass with Tarjan's LCA algorithm. The union-find links every finished
+ * vertex to its tree parent and remembers the heaviest edge on the way to the
+ * set root, so by the time a query's LCA finishes, both endpoints' sets are
+ * rooted at the LCA and the path maximum is read off the two finds.
+ * O((V + Q) log V) with path compression, no per-query tree walks.
+ */
+public final class ForestPathMax {
+
+    /**
+     * Answer for endpoints in different trees, or equal endpoints (empty path)
+     */
+    public static final int NO_PATH = -1;
+
+    private ForestPathMax() {
+    }
+
+    /**
+     * @param vertexCount vertices of the forest, ids 0..vertexCount-1
+     * @param treeFrom first endpoint of each forest edge
+     * @param treeTo second endpoint of each forest edge
+     * @param treeEdge non-negative label of each forest edge, compared with order
+     * @param treeEdgeCount number of forest edges used from the arrays
+     * @param queryFrom first endpoint of each query
+     * @param queryTo second endpoint of each query
+     * @param queryCount number of queries used from the arrays
+     * @param order comparison of two edge labels
+     * @return for each query, the label of the heaviest forest edge on the path
+     *         between its endpoints, or NO_PATH
+     */
+    public static int[] query(int vertexCount, int[] treeFrom, int[] treeTo, int[] treeEdge, int treeEdgeCount,
+                              int[] queryFrom, int[] queryTo, int queryCount, IntBinaryOperator order) {
+        int[] answers = new int[queryCount];
+
+        // Forest adjacency (CSR)
+        int[] treeStart = new int[vertexCount + 1];
+        for (int i = 0; i < treeEdgeCount; i++) {
+            treeStart[treeFrom[i] + 1]++;
+            treeStart[treeTo[i] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            treeStart[v + 1] += treeStart[v];
+        }
+        int[] treeFill = treeStart.clone();
+        int[] treeNeighbor = new int[2 * treeEdgeCount];
+        int[] treeLabel = new int[2 * treeEdgeCount];
+        for (int i = 0; i < treeEdgeCount; i++) {
+            int slot = treeFill[treeFrom[i]]++;
+            treeNeighbor[slot] = treeTo[i];
+            treeLabel[slot] = treeEdge[i];
+            slot = treeFill[treeTo[i]]++;
+            treeNeighbor[slot] = treeFrom[i];
+            treeLabel[slot] = treeEdge[i];
+        }
+
+        // Queries listed at both endpoints (CSR)
+        int[] queryStart = new int[vertexCount + 1];
+        for (int q = 0; q < queryCount; q++) {
+            queryStart[queryFrom[q] + 1]++;
+            queryStart[queryTo[q] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            queryStart[v + 1] += queryStart[v];
+        }
+        int[] queryFill = queryStart.clone();
+        int[] queryAt = new int[2 * queryCount];
+        for (int q = 0; q < queryCount; q++) {
+            queryAt[queryFill[queryFrom[q]]++] = q;
+            queryAt[queryFill[queryTo[q]]++] = q;
+        }
+
+        // Union-find over finished vertices; heaviest[v] is the heaviest edge
+        // from v up to set[v] (NO_PATH while v is its own root)
+        int[] set = new int[vertexCount];
+        int[] heaviest = new int[vertexCount];
+        int[] path = new int[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            set[v] = v;
+            heaviest[v] = NO_PATH;
+        }
+
+        // Queries waiting for their LCA to finish, as linked lists per vertex
+        int[] lcaHead = new int[vertexCount];
+        int[] lcaNext = new int[queryCount];
+        Arrays.fill(lcaHead, -1);
+
+        int[] tree = new int[vertexCount];
+        int[] parent = new int[vertexCount];
+        int[] parentEdge = new int[vertexCount];
+        int[] cursor = new int[vertexCount];
+        boolean[] finished = new boolean[vertexCount];
+        int[] stack = new int[vertexCount];
+        Arrays.fill(tree, -1);
+
+        for (int root = 0; root < vertexCount; root++) {
+            if (tree[root] != -1) {
+                continue;
+            }
+            tree[root] = root;
+            parent[root] = -1;
+            cursor[root] = treeStart[root];
+            int depth = 0;
+            stack[depth++] = root;
+
+            while (depth > 0) {
+                int v = stack[depth - 1];
+                if (cursor[v] < treeStart[v + 1]) {
+                    int slot = cursor[v]++;
+                    int next = treeNeighbor[slot];
+                    if (tree[next] == -1) {
+                        tree[next] = root;
+                        parent[next] = v;
+                        parentEdge[next] = treeLabel[slot];
+                        cursor[next] = treeStart[next];
+                        stack[depth++] = next;
+                    }
+                    continue;
+                }
+
+                // v and its subtree are done
+                depth--;
+                finished[v] = true;
+                for (int i = queryStart[v]; i < queryStart[v + 1]; i++) {
+                    int q = queryAt[i];
+                    int other = queryFrom[q] == v ? queryTo[q] : queryFrom[q];
+                    if (other == v || (tree[other] != -1 && tree[other] != root)) {
+                        answers[q] = NO_PATH; // Empty path, or an earlier tree
+                    } else if (finished[other]) {
+                        // Second endpoint to finish: the LCA is the root of the other's set
+                        int lca = find(set, heaviest, path, other, order);
+                        lcaNext[q] = lcaHead[lca];
+                        lcaHead[lca] = q;
+                    }
+                }
+                for (int q = lcaHead[v]; q != -1; q = lcaNext[q]) {
+                    answers[q] = heavier(pathMax(set, heaviest, path, queryFrom[q], order),
+                        pathMax(set, heaviest, path, queryTo[q], order), order);
+                }
+                if (parent[v] != -1) {
+                    set[v] = parent[v];
+                    heaviest[v] = parentEdge[v];
+                }
+            }
+        }
+        return answers;
+    }
+
+    /**
+     * Heaviest edge from v up to its set root
+     */
+    private static int pathMax(int[] set, int[] heaviest, int[] path, int v, IntBinaryOperator order) {
+        find(set, heaviest, path, v, order);
+        return set[v] == v ? NO_PATH : heaviest[v];
+    }
+
+    /**
+     * Root of v's set, compressing the path and folding the heaviest edges into it
+     */
+    private static int find(int[] set, int[] heaviest, int[] path, int v, IntBinaryOperator order) {
+        int length = 0;
+        int root = v;
+        while (set[root] != root) {
+            path[length++] = root;
+            root = set[root];
+        }
+        // path[length - 1] already points at the root; fold from there downwards
+        for (int i = length - 2; i >= 0; i--) {
+            int node = path[i];
+            heaviest[node] = heavier(heaviest[node], heaviest[set[node]], order);
+            set[node] = root;
+        }
+        return root;
+    }
+
+    private static int heavier(int edge1, int edge2, IntBinaryOperator order) {
+        if (edge1 == NO_PATH) {
+            return edge2;
+        }
+        if (edge2 == NO_PATH) {
+            return edge1;
+        }
+        return order.applyAsInt(edge1, edge2) >= 0 ? edge1 : edge2;
+    }
+}
@@ -1,89 +1,401 @@
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
- * Represents a weighted undirected graph
+ * Represents a weighted undirected graph.
+ * A graph is either built from Edge objects, or backed directly by a compact
+ * GraphStorage (for example off-heap), in which case Edge objects are only
+ * created on request. The MST engines always read the GraphStorage.
+ * Derived structures (node index, storage, adjacency) are built on first use,
+ * and the node and edge lists are shared as read-only views.
  */
-public class Graph {
+public class Graph implements AutoCloseable {
     private int id;
     private List<String> nodes;
     private List<Edge> edges;
+    private List<Edge> edgeView;
     private Map<String, List<Edge>> adjacencyList;
+    private Map<String, Integer> nodeIndex;
+    private GraphStorage storage;
+    private EdgeOrder edgeOrder;
+    private volatile Boolean connected;
+    private volatile long version;
+    // The owner's reference plus one per overlay reading this graph's storage
+    private int references = 1;
+    // Storages replaced by moveOffHeap() while overlays still read them
+    private List<GraphStorage> retired;
 
     public Graph(int id, List<String> nodes, List<Edge> edges) {
         this.id = id;
-        this.nodes = new ArrayList<>(nodes);
-        this.edges = new ArrayList<>(edges);
-        this.adjacencyList = new HashMap<>();
-        buildAdjacencyList();
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.edges = Collections.unmodifiableList(new ArrayList<>(edges));
     }
 
-    private void buildAdjacencyList() {
+    /**
+     * Graph backed by an existing storage; the graph takes ownership of it
+     */
+    public Graph(int id, List<String> nodes, GraphStorage storage) {
+        if (storage.getVertexCount() != nodes.size()) {
+            throw new IllegalArgumentException("Storage has " + storage.getVertexCount()
+                + " vertices but " + nodes.size() + " node names were given");
+        }
+        this.id = id;
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.storage = storage;
+    }
+
+    private synchronized Map<String, Integer> nodeIndex() {
+        if (nodeIndex == null) {
+            Map<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < nodes.size(); i++) {
+                index.put(nodes.get(i), i);
+            }
+            nodeIndex = index;
+        }
+        return nodeIndex;
+    }
+
+    private Map<String, List<Edge>> buildAdjacencyList(List<Edge> edgeList) {
         // Initialize adjacency list for all nodes
+        Map<String, List<Edge>> adjacency = new HashMap<>();
         for (String node : nodes) {
-            adjacencyList.put(node, new ArrayList<>());
+            adjacency.put(node, new ArrayList<>());
         }
 
         // Add edges to adjacency list (undirected graph)
-        for (Edge edge : edges) {
-            adjacencyList.get(edge.getFrom()).add(edge);
+        for (Edge edge : edgeList) {
+            adjacency.get(edge.getFrom()).add(edge);
             // Add reverse edge for undirected graph
-            adjacencyList.get(edge.getTo()).add(
-                new Edge(edge.getTo(), edge.getFrom(), edge.getWeight())
-            );
+            adjacency.get(edge.getTo()).add(edge.reversed());
+        }
+
+        for (Map.Entry<String, List<Edge>> entry : adjacency.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
         }
+        return Collections.unmodifiableMap(adjacency);
     }
 
     public int getId() {
         return id;
     }
 
+    /**
+     * Read-only view of the node names
+     */
     public List<String> getNodes() {
-        return new ArrayList<>(nodes);
+        return nodes;
     }
 
-    public List<Edge> getEdges() {
-        return new ArrayList<>(edges);
+    /**
+     * Read-only view of the edges in input order. For storage-backed graphs
+     * Edge objects are created as the view is read.
+     */
+    public synchronized List<Edge> getEdges() {
+        if (edges != null) {
+            return edges;
+        }
+        if (edgeView == null) {
+            edgeView = new AbstractList<Edge>() {
+                @Override
+                public Edge get(int index) {
+                    return getEdge(index);
+                }
+
+                @Override
+                public int size() {
+                    return getEdgeCount();
+                }
+            };
+        }
+        return edgeView;
     }
 
-    public Map<String, List<Edge>> getAdjacencyList() {
+    /**
+     * Read-only adjacency lists by node name, built on first use
+     */
+    public synchronized Map<String, List<Edge>> getAdjacencyList() {
+        if (adjacencyList == null) {
+            adjacencyList = buildAdjacencyList(getEdges());
+        }
         return adjacencyList;
     }
 
+    /**
+     * Compact index-based view of this graph, built on first use for graphs
+     * created from Edge objects
+     */
+    public synchronized GraphStorage getStorage() {
+        if (storage == null) {
+            Map<String, Integer> index = nodeIndex();
+            int[] from = new int[edges.size()];
+            int[] to = new int[edges.size()];
+            WeightType weightType = WeightType.INT;
+            for (int e = 0; e < edges.size(); e++) {
+                Edge edge = edges.get(e);
+                from[e] = requireIndex(index, edge.getFrom());
+                to[e] = requireIndex(index, edge.getTo());
+                weightType = weightType.widen(edge.getWeightType());
+            }
+            storage = buildStorage(from, to, weightType);
+        }
+        return storage;
+    }
+
+    private GraphStorage buildStorage(int[] from, int[] to, WeightType weightType) {
+        switch (weightType) {
+            case INT: {
+                int[] weights = new int[edges.size()];
+                for (int e = 0; e < weights.length; e++) {
+                    weights[e] = edges.get(e).getWeight();
+                }
+                return new ArrayGraphStorage(nodes.size(), from, to, weights);
+            }
+            case LONG: {
+                long[] weights = new long[edges.size()];
+                for (int e = 0; e < weights.length; e++) {
+                    weights[e] = edges.get(e).getLongWeight();
+                }
+                return new ArrayGraphStorage(nodes.size(), from, to, weights);
+            }
+            default: {
+                double[] weights = new double[edges.size()];
+                for (int e = 0; e < weights.length; e++) {
+                    weights[e] = edges.get(e).getDoubleWeight();
+                }
+                return new ArrayGraphStorage(nodes.size(), from, to, weights);
+            }
+        }
+    }
+
+    public WeightType getWeightType() {
+        return getStorage().getWeightType();
+    }
+
+    /**
+     * Canonical edge order shared by all MST engines, computed on first use
+     */
+    public synchronized EdgeOrder getEdgeOrder() {
+        if (edgeOrder == null) {
+            edgeOrder = new EdgeOrder(getStorage());
+        }
+        return edgeOrder;
+    }
+
+    /**
+     * Copy of this graph whose storage lives off-heap. The copy must be closed
+     * to release that memory.
+     */
+    public Graph toOffHeap() {
+        return new Graph(id, nodes, OffHeapGraphStorage.copyOf(getStorage()));
+    }
+
+    /**
+     * True while the graph still holds the Edge objects it was built from
+     */
+    public synchronized boolean hasEdgeObjects() {
+        return edges != null;
+    }
+
+    /**
+     * Keep only the compact storage of a graph built from Edge objects, so the
+     * objects can be collected. The graph stays usable; getEdges() then creates
+     * Edge objects on request.
+     */
+    public synchronized void releaseEdgeObjects() {
+        getStorage();
+        edges = null;
+        adjacencyList = null;
+    }
+
+    /**
+     * Move the storage off-heap in place (unlike toOffHeap(), which copies the
+     * graph) and release the Edge objects. Edge indices do not change.
+     */
+    public synchronized void moveOffHeap() {
+        GraphStorage heapStorage = getStorage();
+        if (heapStorage.isOffHeap()) {
+            return;
+        }
+        storage = OffHeapGraphStorage.copyOf(heapStorage);
+        if (references > 1) {
+            // Overlays of deltas still read the old storage
+            if (retired == null) {
+                retired = new ArrayList<>();
+            }
+            retired.add(heapStorage);
+        } else {
+            heapStorage.close();
+        }
+        edges = null;
+        adjacencyList = null;
+    }
+
+    /**
+     * Keep the storage open for an OverlayGraphStorage built on this graph;
+     * the overlay closes the graph again when it is closed itself
+     * @throws IllegalStateException if the graph is already closed
+     */
+    synchronized void retain() {
+        if (references == 0) {
+            throw new IllegalStateException("Graph " + id + " is closed");
+        }
+        references++;
+    }
+
+    /**
+     * Release the memory held by the graph storage (relevant for off-heap and
+     * mapped graphs, whose memory is freed once the buffers are collected).
+     * While overlays of deltas of this graph are open, the storage stays open
+     * until the last of them is closed.
+     */
+    @Override
+    public synchronized void close() {
+        if (references == 0 || --references > 0) {
+            return;
+        }
+        if (storage != null) {
+            storage.close();
+        }
+        if (retired != null) {
+            for (GraphStorage old : retired) {
+                old.close();
+            }
+            retired = null;
+        }
+    }
+
+    /**
+     * Dense integer id of a node (its position in the node list), or -1
+     */
+    public int indexOf(String node) {
+        Integer index = nodeIndex().get(node);
+        return index == null ? -1 : index;
+    }
+
+    private static int requireIndex(Map<String, Integer> nodeIndex, String node) {
+        Integer index = nodeIndex.get(node);
+        if (index == null) {
+            throw new IllegalArgumentException("Edge references unknown node: " + node);
+        }
+        return index;
+    }
+
+    public String getNode(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * Edge by its index in input order. Synchronized like the other accessors,
+     * since releaseEdgeObjects() and moveOffHeap() may swap the representation
+     * while another thread reads the graph.
+     */
+    public synchronized Edge getEdge(int index) {
+        if (edges != null) {
+            return edges.get(index);
+        }
+        String from = nodes.get(storage.getEdgeFrom(index));
+        String to = nodes.get(storage.getEdgeTo(index));
+        if (storage.getWeightType() == WeightType.DOUBLE) {
+            return new Edge(from, to, storage.getEdgeWeightDouble(index));
+        }
+        return new Edge(from, to, storage.getEdgeWeightLong(index));
+    }
+
     public int getVertexCount() {
         return nodes.size();
     }
 
-    public int getEdgeCount() {
-        return edges.size();
+    public synchronized int getEdgeCount() {
+        return edges != null ? edges.size() : storage.getEdgeCount();
     }
 
     /**
-     * Check if the graph is connected using BFS
+     * Check if the graph is connected using BFS (computed once, graphs are immutable)
      */
     public boolean isConnected() {
+        Boolean cached = connected;
+        if (cached == null) {
+            cached = checkConnected();
+            connected = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Record a connectivity result that is already known, e.g. from a snapshot
+     */
+    void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+
+    /**
+     * Version of the graph for the GraphStore: the hash of the input entry it
+     * was parsed from, or the version of the snapshot it was opened from
+     * @return the version, or 0 if unknown
+     */
+    long getVersion() {
+        return version;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    private boolean checkConnected() {
         if (nodes.isEmpty()) return true;
 
-        Set<String> visited = new HashSet<>();
-        Queue<String> queue = new LinkedList<>();
-        
-        queue.offer(nodes.get(0));
-        visited.add(nodes.get(0));
-
-        while (!queue.isEmpty()) {
-            String current = queue.poll();
-            for (Edge edge : adjacencyList.get(current)) {
-                if (!visited.contains(edge.getTo())) {
-                    visited.add(edge.getTo());
-                    queue.offer(edge.getTo());
+        GraphStorage view = getStorage();
+        if (!view.isAdjacencyBuilt()) {
+            // Union the edge arrays rather than build adjacency just for a BFS
+            UnionFind uf = new UnionFind(nodes.size());
+            int components = nodes.size();
+            for (int e = 0; e < view.getEdgeCount() && components > 1; e++) {
+                if (uf.union(view.getEdgeFrom(e), view.getEdgeTo(e))) {
+                    components--;
+                }
+            }
+            return components == 1;
+        }
+
+        boolean[] visited = new boolean[nodes.size()];
+        int[] queue = new int[nodes.size()];
+        int head = 0;
+        int tail = 0;
+
+        queue[tail++] = 0;
+        visited[0] = true;
+
+        while (head < tail) {
+            int current = queue[head++];
+            for (int slot = view.getAdjacencyStart(current); slot < view.getAdjacencyEnd(current); slot++) {
+                int next = view.getAdjacentVertex(slot);
+                if (!visited[next]) {
+                    visited[next] = true;
+                    queue[tail++] = next;
                 }
             }
         }
 
-        return visited.size() == nodes.size();
+        return tail == nodes.size();
+    }
+
+    /**
+     * Check if the graph is connected by unioning all edges in parallel
+     * with a lock-free Union-Find
+     */
+    public boolean isConnectedParallel() {
+        if (nodes.isEmpty()) return true;
+
+        GraphStorage view = getStorage();
+        ConcurrentUnionFind uf = new ConcurrentUnionFind(nodes.size());
+        IntStream.range(0, view.getEdgeCount()).parallel().forEach(e ->
+            uf.union(view.getEdgeFrom(e), view.getEdgeTo(e)));
+
+        return uf.getComponentCount() == 1;
     }
 
     @Override
     public String toString() {
-        return String.format("Graph %d: %d vertices, %d edges", id, nodes.size(), edges.size());
+        return String.format("Graph %d: %d vertices, %d edges", id, nodes.size(), getEdgeCount());
     }
 }
@@ -0,0 +1,246 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Recently seen graphs and their MST results, by graph id, so that delta
+ * input can be applied to its base graph and the base MST can be updated
+ * instead of recomputed.
+ * Only the most recently used graphs are kept in memory, except that a graph
+ * is never evicted while deltas of it are still to come (see expectDelta) and
+ * a graph built from a delta is kept until it has been solved (see release).
+ * Base graphs that are not in memory are looked up in the GraphStore, if one
+ * is configured. Safe for use from the parser thread and the MST workers at
+ * the same time.
+ * Graphs dropped from the cache are closed (which releases off-heap and
+ * mapped storage), but not before they have been solved; close() closes the
+ * graphs still held.
+ */
+public class GraphCache implements Closeable {
+    public static final int DEFAULT_CAPACITY = 8;
+
+    private final int capacity;
+    private final GraphStore store;
+    private final long memoryBudgetBytes;
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Deltas not yet solved, by the id of their base graph
+    private final Map<Integer, Integer> pendingDeltas = new HashMap<>();
+    // Dropped from the cache before being solved: closed on release
+    private final Set<Graph> closeOnRelease = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private static final class Entry {
+        final Graph graph;
+        GraphDelta.Patch patch;
+        MSTResult result;
+        boolean released;
+
+        Entry(Graph graph, GraphDelta.Patch patch) {
+            this.graph = graph;
+            this.patch = patch;
+        }
+    }
+
+    public GraphCache() {
+        this(DEFAULT_CAPACITY, null);
+    }
+
+    /**
+     * @param capacity graphs kept in memory besides those still needed by deltas
+     * @param store snapshot store consulted for older graphs, or null
+     */
+    public GraphCache(int capacity, GraphStore store) {
+        this(capacity, store, 0);
+    }
+
+    /**
+     * @param capacity graphs kept in memory besides those still needed by deltas
+     * @param store snapshot store consulted for older graphs, or null
+     * @param memoryBudgetBytes heap budget per graph, within which the parser
+     *                          builds the graphs it adds (see MemoryPlan), or 0
+     */
+    public GraphCache(int capacity, GraphStore store, long memoryBudgetBytes) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        if (memoryBudgetBytes < 0) {
+            throw new IllegalArgumentException("Memory budget must not be negative: " + memoryBudgetBytes);
+        }
+        this.capacity = capacity;
+        this.store = store;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    public GraphStore getStore() {
+        return store;
+    }
+
+    /**
+     * Heap budget per graph in bytes, or 0 for no budget
+     */
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    /**
+     * Announce a delta of the given graph further on in the input. The graph
+     * then stays in memory until every announced delta of it has been released.
+     */
+    public synchronized void expectDelta(int baseId) {
+        pendingDeltas.merge(baseId, 1, Integer::sum);
+    }
+
+    public synchronized void put(Graph graph) {
+        drop(entries.put(graph.getId(), new Entry(graph, null)));
+        evict();
+    }
+
+    /**
+     * Remember a patched graph together with the patch that produced it
+     */
+    public synchronized void put(GraphDelta.Patch patch) {
+        drop(entries.put(patch.getGraph().getId(), new Entry(patch.getGraph(), patch)));
+        evict();
+    }
+
+    /**
+     * Latest graph with the given id, from memory or from the store. A graph
+     * opened from the store is kept (and closed) like the other graphs.
+     * @return the graph, or null if it is unknown
+     */
+    public Graph getGraph(int graphId) throws IOException {
+        synchronized (this) {
+            Entry entry = entries.get(graphId);
+            if (entry != null) {
+                return entry.graph;
+            }
+        }
+        Graph graph = store == null ? null : store.open(graphId);
+        if (graph != null) {
+            synchronized (this) {
+                Entry entry = new Entry(graph, null);
+                entry.released = true; // Not solved in this run
+                drop(entries.put(graphId, entry));
+                evict();
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Patch that produced the graph, if it came from delta input
+     */
+    public synchronized GraphDelta.Patch getPatch(Graph graph) {
+        Entry entry = entryOf(graph);
+        return entry == null ? null : entry.patch;
+    }
+
+    /**
+     * MST result recorded for this graph instance, or null
+     */
+    public synchronized MSTResult getResult(Graph graph) {
+        Entry entry = entryOf(graph);
+        return entry == null ? null : entry.result;
+    }
+
+    /**
+     * Record the MST of a graph
+     */
+    public synchronized void putResult(Graph graph, MSTResult result) {
+        Entry entry = entryOf(graph);
+        if (entry != null) {
+            entry.result = result;
+        }
+    }
+
+    /**
+     * The graph has been solved (or given up on). If it came from a delta, its
+     * patch, which keeps the base graph reachable, is dropped and the base no
+     * longer has to stay in memory for it. A graph already dropped from the
+     * cache is closed.
+     */
+    public synchronized void release(Graph graph) {
+        Entry entry = entryOf(graph);
+        if (entry == null) {
+            if (closeOnRelease.remove(graph)) {
+                graph.close();
+            }
+            return;
+        }
+        entry.released = true;
+        if (entry.patch == null) {
+            return;
+        }
+        pendingDeltas.computeIfPresent(entry.patch.getDelta().getBaseId(),
+            (baseId, count) -> count > 1 ? count - 1 : null);
+        entry.patch = null;
+        evict();
+    }
+
+    /**
+     * Drop the least recently used graphs that are not needed by a delta
+     * until at most capacity of them are left
+     */
+    private void evict() {
+        int evictable = 0;
+        for (Map.Entry<Integer, Entry> entry : entries.entrySet()) {
+            if (isEvictable(entry.getKey(), entry.getValue())) {
+                evictable++;
+            }
+        }
+        Iterator<Map.Entry<Integer, Entry>> eldest = entries.entrySet().iterator();
+        while (evictable > capacity && eldest.hasNext()) {
+            Map.Entry<Integer, Entry> entry = eldest.next();
+            if (isEvictable(entry.getKey(), entry.getValue())) {
+                eldest.remove();
+                drop(entry.getValue());
+                evictable--;
+            }
+        }
+    }
+
+    /**
+     * Close a graph that left the cache, or once it is released if it is
+     * still being solved
+     */
+    private void drop(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        if (entry.released) {
+            entry.graph.close();
+        } else {
+            closeOnRelease.add(entry.graph);
+        }
+    }
+
+    /**
+     * Close all graphs still held, once no more graphs are solved
+     */
+    @Override
+    public synchronized void close() {
+        for (Entry entry : entries.values()) {
+            entry.graph.close();
+        }
+        for (Graph graph : closeOnRelease) {
+            graph.close();
+        }
+        entries.clear();
+        closeOnRelease.clear();
+        pendingDeltas.clear();
+    }
+
+    private boolean isEvictable(int graphId, Entry entry) {
+        return entry.patch == null && !pendingDeltas.containsKey(graphId);
+    }
+
+    private Entry entryOf(Graph graph) {
+        Entry entry = entries.get(graph.getId());
+        return entry != null && entry.graph == graph ? entry : null;
+    }
+}
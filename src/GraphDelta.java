@@ -0,0 +1,294 @@
+import java.util.*;
+
+/**
+ * Edge patch against a previously seen graph: nodes and edges to add, edges
+ * to remove and edges to give a new weight. Removed and reweighted edges are
+ * named by their endpoints (in either direction) and apply to every edge
+ * between those endpoints.
+ */
+public class GraphDelta {
+    private final int id;
+    private final int baseId;
+    private final List<String> addedNodes;
+    private final List<Edge> addedEdges;
+    private final List<Edge> removedEdges;
+    private final List<Edge> reweightedEdges;
+
+    public GraphDelta(int id, int baseId, List<String> addedNodes, List<Edge> addedEdges,
+                      List<Edge> removedEdges, List<Edge> reweightedEdges) {
+        this.id = id;
+        this.baseId = baseId;
+        this.addedNodes = new ArrayList<>(addedNodes);
+        this.addedEdges = new ArrayList<>(addedEdges);
+        this.removedEdges = new ArrayList<>(removedEdges);
+        this.reweightedEdges = new ArrayList<>(reweightedEdges);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getBaseId() {
+        return baseId;
+    }
+
+    /**
+     * Number of edges touched by this delta
+     */
+    public int size() {
+        return addedEdges.size() + removedEdges.size() + reweightedEdges.size();
+    }
+
+    /**
+     * Build the patched graph on an OverlayGraphStorage over the base graph's
+     * storage, so no base edge is copied. Surviving base edges keep their
+     * relative input order (so the canonical order among them does not change)
+     * and added edges are appended after them.
+     * @throws IllegalArgumentException if the delta does not fit the base graph
+     */
+    public Patch apply(Graph base) {
+        if (base.getId() != baseId) {
+            throw new IllegalArgumentException("Delta is based on graph " + baseId + ", not " + base.getId());
+        }
+
+        List<String> nodes = new ArrayList<>(base.getNodes());
+        Map<String, Integer> addedIndex = new HashMap<>();
+        for (String node : addedNodes) {
+            if (base.indexOf(node) != -1 || addedIndex.containsKey(node)) {
+                throw new IllegalArgumentException("Node already exists: " + node);
+            }
+            addedIndex.put(node, nodes.size());
+            nodes.add(node);
+        }
+
+        // Endpoint pairs named by the delta, keyed by base vertex ids
+        Map<Long, Edge> removed = pairMap(base, removedEdges);
+        Map<Long, Edge> reweighted = pairMap(base, reweightedEdges);
+        reweighted.keySet().removeAll(removed.keySet());
+        Map<Long, int[]> matches = matchPairs(base.getStorage(), removed, reweighted);
+        for (Map<Long, Edge> named : Arrays.asList(removed, reweighted)) {
+            for (Map.Entry<Long, Edge> entry : named.entrySet()) {
+                if (!matches.containsKey(entry.getKey())) {
+                    Edge edge = entry.getValue();
+                    throw new IllegalArgumentException("No edge " + edge.getFrom() + "-" + edge.getTo()
+                        + " in graph " + baseId);
+                }
+            }
+        }
+
+        IntArray removedIndices = new IntArray();
+        for (Long pair : removed.keySet()) {
+            removedIndices.addAll(matches.get(pair));
+        }
+        // Every reweighted base edge with the weight named for its endpoints
+        List<Long> reweightedPairs = new ArrayList<>(reweighted.keySet());
+        int reweightedCount = 0;
+        for (Long pair : reweightedPairs) {
+            reweightedCount += matches.get(pair).length;
+        }
+        long[] reweightedKeys = new long[reweightedCount];
+        reweightedCount = 0;
+        for (int p = 0; p < reweightedPairs.size(); p++) {
+            for (int edge : matches.get(reweightedPairs.get(p))) {
+                reweightedKeys[reweightedCount++] = ((long) edge << 32) | p;
+            }
+        }
+        Arrays.sort(reweightedKeys);
+        int[] reweightedIndices = new int[reweightedKeys.length];
+        List<Edge> newWeights = new ArrayList<>(reweightedKeys.length);
+        for (int i = 0; i < reweightedKeys.length; i++) {
+            reweightedIndices[i] = (int) (reweightedKeys[i] >>> 32);
+            newWeights.add(reweighted.get(reweightedPairs.get((int) reweightedKeys[i])));
+        }
+
+        int[] addedFrom = new int[addedEdges.size()];
+        int[] addedTo = new int[addedEdges.size()];
+        for (int i = 0; i < addedEdges.size(); i++) {
+            addedFrom[i] = nodeIndex(base, addedIndex, addedEdges.get(i).getFrom());
+            addedTo[i] = nodeIndex(base, addedIndex, addedEdges.get(i).getTo());
+        }
+
+        OverlayGraphStorage storage = new OverlayGraphStorage(base, nodes.size(), removedIndices.sorted(),
+            reweightedIndices, newWeights, addedFrom, addedTo, addedEdges);
+        return new Patch(this, base, new Graph(id, nodes, storage), storage);
+    }
+
+    /**
+     * Base edges between each named pair of endpoints, found through the
+     * base adjacency if it is built, otherwise in one scan of the edge arrays
+     * @return ascending edge indices by pair; pairs without edges are left out
+     */
+    private static Map<Long, int[]> matchPairs(GraphStorage storage, Map<Long, Edge> removed,
+                                               Map<Long, Edge> reweighted) {
+        Map<Long, IntArray> found = new HashMap<>();
+        Set<Long> pairs = new HashSet<>(removed.keySet());
+        pairs.addAll(reweighted.keySet());
+        if (pairs.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        if (storage.isAdjacencyBuilt()) {
+            for (Long pair : pairs) {
+                int from = (int) (pair >>> 32);
+                int to = (int) (long) pair;
+                if (storage.getAdjacencyEnd(to) - storage.getAdjacencyStart(to)
+                        < storage.getAdjacencyEnd(from) - storage.getAdjacencyStart(from)) {
+                    to = from; // Scan the endpoint with fewer neighbours
+                    from = (int) (long) pair;
+                }
+                for (int slot = storage.getAdjacencyStart(from); slot < storage.getAdjacencyEnd(from); slot++) {
+                    if (storage.getAdjacentVertex(slot) == to) {
+                        found.computeIfAbsent(pair, key -> new IntArray()).add(storage.getAdjacentEdge(slot));
+                    }
+                }
+            }
+        } else {
+            // Only edges from a named vertex need the pair lookup
+            boolean[] named = new boolean[storage.getVertexCount()];
+            for (Long pair : pairs) {
+                named[(int) (pair >>> 32)] = true;
+            }
+            for (int e = 0; e < storage.getEdgeCount(); e++) {
+                int from = storage.getEdgeFrom(e);
+                int to = storage.getEdgeTo(e);
+                if (named[Math.min(from, to)]) {
+                    long pair = pairKey(from, to);
+                    if (pairs.contains(pair)) {
+                        found.computeIfAbsent(pair, key -> new IntArray()).add(e);
+                    }
+                }
+            }
+        }
+
+        Map<Long, int[]> matches = new HashMap<>();
+        for (Map.Entry<Long, IntArray> entry : found.entrySet()) {
+            matches.put(entry.getKey(), entry.getValue().sorted()); // A self-loop is adjacent twice
+        }
+        return matches;
+    }
+
+    private static int nodeIndex(Graph base, Map<String, Integer> addedIndex, String node) {
+        int index = base.indexOf(node);
+        if (index == -1) {
+            Integer added = addedIndex.get(node);
+            if (added == null) {
+                throw new IllegalArgumentException("Edge references unknown node: " + node);
+            }
+            index = added;
+        }
+        return index;
+    }
+
+    private static Map<Long, Edge> pairMap(Graph base, List<Edge> named) {
+        Map<Long, Edge> pairs = new HashMap<>();
+        for (Edge edge : named) {
+            int from = base.indexOf(edge.getFrom());
+            int to = base.indexOf(edge.getTo());
+            if (from == -1 || to == -1) {
+                throw new IllegalArgumentException("No edge " + edge.getFrom() + "-" + edge.getTo()
+                    + " in graph " + base.getId());
+            }
+            pairs.put(pairKey(from, to), edge);
+        }
+        return pairs;
+    }
+
+    private static long pairKey(int from, int to) {
+        return ((long) Math.min(from, to) << 32) | Math.max(from, to);
+    }
+
+    /**
+     * Growable int array, sorted and deduplicated on the way out
+     */
+    private static final class IntArray {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(int[] more) {
+            for (int value : more) {
+                add(value);
+            }
+        }
+
+        int[] sorted() {
+            int[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            int distinct = 0;
+            for (int i = 0; i < result.length; i++) {
+                if (i == 0 || result[i] != result[distinct - 1]) {
+                    result[distinct++] = result[i];
+                }
+            }
+            return Arrays.copyOf(result, distinct);
+        }
+    }
+
+    /**
+     * A delta applied to its base graph, with the edge mapping needed to
+     * update the base graph's MST instead of recomputing it
+     */
+    public static class Patch {
+        private final GraphDelta delta;
+        private final Graph base;
+        private final Graph graph;
+        private final OverlayGraphStorage overlay;
+
+        private Patch(GraphDelta delta, Graph base, Graph graph, OverlayGraphStorage overlay) {
+            this.delta = delta;
+            this.base = base;
+            this.graph = graph;
+            this.overlay = overlay;
+        }
+
+        public GraphDelta getDelta() {
+            return delta;
+        }
+
+        public Graph getBase() {
+            return base;
+        }
+
+        /**
+         * The patched graph
+         */
+        public Graph getGraph() {
+            return graph;
+        }
+
+        /**
+         * Index of a base edge in the patched graph, or -1 if it was removed
+         */
+        public int getNewIndex(int baseEdge) {
+            return overlay.getNewIndex(baseEdge);
+        }
+
+        /**
+         * Index in the base graph of a patched-graph edge below getFirstAddedEdge()
+         */
+        public int getBaseIndex(int edge) {
+            return overlay.getBaseIndex(edge);
+        }
+
+        /**
+         * Edges from this index on were added by the delta
+         */
+        public int getFirstAddedEdge() {
+            return overlay.getFirstAddedEdge();
+        }
+
+        /**
+         * Indices (in the patched graph) of the edges whose weight was set by
+         * the delta, ascending
+         */
+        public int[] getReweightedEdges() {
+            return overlay.getReweightedEdges();
+        }
+    }
+}
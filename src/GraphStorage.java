@@ -0,0 +1,71 @@
+/**
+ * Compact, index-based representation of a weighted undirected graph, read by the MST engines.
+ * Vertices are numbered 0..V-1 in node list order and edges 0..E-1 in input order.
+ * Adjacency is kept in CSR form: the neighbours of vertex v occupy the slots
+ * getAdjacencyStart(v) (inclusive) to getAdjacencyEnd(v) (exclusive), and every
+ * undirected edge appears once from each of its endpoints.
+ */
+public interface GraphStorage extends AutoCloseable {
+
+    int getVertexCount();
+
+    int getEdgeCount();
+
+    int getEdgeFrom(int edge);
+
+    int getEdgeTo(int edge);
+
+    WeightType getWeightType();
+
+    /**
+     * Weight of an edge in an INT graph
+     * @throws IllegalStateException for other weight types
+     */
+    int getEdgeWeight(int edge);
+
+    /**
+     * Weight of an edge in an INT or LONG graph
+     * @throws IllegalStateException for DOUBLE graphs
+     */
+    long getEdgeWeightLong(int edge);
+
+    /**
+     * Weight of an edge in a graph of any weight type
+     */
+    double getEdgeWeightDouble(int edge);
+
+    /**
+     * False while the adjacency arrays of a lazily built storage do not exist
+     * yet; callers that only need the edge arrays can then avoid building them
+     */
+    default boolean isAdjacencyBuilt() {
+        return true;
+    }
+
+    /**
+     * True if the arrays live outside the Java heap (direct or mapped buffers)
+     */
+    default boolean isOffHeap() {
+        return false;
+    }
+
+    int getAdjacencyStart(int vertex);
+
+    int getAdjacencyEnd(int vertex);
+
+    /**
+     * Neighbour reached through the given adjacency slot
+     */
+    int getAdjacentVertex(int slot);
+
+    /**
+     * Edge index behind the given adjacency slot
+     */
+    int getAdjacentEdge(int slot);
+
+    /**
+     * Release the memory held by this storage. It must not be read afterwards.
+     */
+    @Override
+    void close();
+}
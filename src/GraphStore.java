@@ -0,0 +1,511 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Local on-disk store of built graphs, so that a graph analysed again in a
+ * later run does not have to be rebuilt.
+ * Each graph id has one snapshot file holding the node names, the CSR arrays
+ * of its GraphStorage and whether it is connected. A snapshot is tagged with
+ * the version of the graph it was saved from and protected by a CRC32 of its
+ * payload; open() ignores snapshots whose version does not match or whose
+ * payload is damaged.
+ * The parser versions graphs by a hash of their entry in the input file,
+ * which is known before the entry is parsed, so an up-to-date snapshot
+ * replaces parsing and building the graph altogether. Graphs built by other
+ * means are versioned by a hash of their content.
+ * Opened snapshots are memory-mapped: apart from the node names nothing is
+ * copied onto the Java heap, and the checksum pass is a single sequential
+ * read of the file, which is far cheaper than parsing and rebuilding. The
+ * mapping is released once the graph is no longer reachable.
+ */
+public class GraphStore {
+    private static final int MAGIC = 0x4D535447; // "MSTG"
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 64;
+
+    private final Path directory;
+
+    public GraphStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Content hash identifying a version of a graph: node names and edges in
+     * input order (FNV-1a)
+     */
+    public static long versionOf(Graph graph) {
+        long hash = 0xcbf29ce484222325L;
+        hash = fnv(hash, graph.getVertexCount());
+        for (int v = 0; v < graph.getVertexCount(); v++) {
+            hash = fnv(hash, graph.getNode(v));
+        }
+        hash = fnv(hash, graph.getEdgeCount());
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            Edge edge = graph.getEdge(e);
+            hash = fnv(hash, edge.getFrom());
+            hash = fnv(hash, edge.getTo());
+            hash = fnv(hash, edge.getWeightType().ordinal());
+            hash = fnv(hash, edge.getWeightType() == WeightType.DOUBLE
+                ? Double.doubleToLongBits(edge.getDoubleWeight()) : edge.getLongWeight());
+        }
+        return hash;
+    }
+
+    /**
+     * Version of a graph given by its entry in the input file (FNV-1a of the
+     * entry's text, so any change to the entry is a new version)
+     */
+    public static long versionOf(CharSequence entry) {
+        return fnv(0xcbf29ce484222325L, entry);
+    }
+
+    /**
+     * Version of the graph built by applying a delta entry to a base graph
+     * @param baseVersion version of the base graph, or 0 if unknown
+     */
+    public static long versionOf(long baseVersion, CharSequence deltaEntry) {
+        return fnv(fnv(0xcbf29ce484222325L, baseVersion), deltaEntry);
+    }
+
+    /**
+     * True if the graph is backed by an opened snapshot
+     */
+    public static boolean isSnapshot(Graph graph) {
+        return graph.getStorage() instanceof SnapshotStorage;
+    }
+
+    private static long fnv(long hash, CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return (hash ^ 0xff) * 0x100000001b3L; // Separator, so "ab","c" differs from "a","bc"
+    }
+
+    private static long fnv(long hash, long value) {
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public Path snapshotPath(int graphId) {
+        return directory.resolve("graph-" + graphId + ".snapshot");
+    }
+
+    /**
+     * Save a snapshot of the graph, replacing any previous one for its id. It
+     * is tagged with the graph's version if known, or else its content hash.
+     * The file is written next to the target and moved into place, so readers
+     * never see a partial snapshot.
+     */
+    public void save(Graph graph) throws IOException {
+        GraphStorage storage = graph.getStorage();
+        int vertexCount = storage.getVertexCount();
+        int edgeCount = storage.getEdgeCount();
+
+        List<byte[]> names = new ArrayList<>(vertexCount);
+        long namesBytes = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            byte[] name = graph.getNode(v).getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            namesBytes += 4 + name.length;
+        }
+
+        Path temp = Files.createTempFile(directory, "graph-" + graph.getId() + "-", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                SectionWriter out = new SectionWriter(channel, HEADER_SIZE);
+                for (byte[] name : names) {
+                    out.putInt(name.length);
+                    out.put(name);
+                }
+                out.align();
+                for (int e = 0; e < edgeCount; e++) {
+                    out.putInt(storage.getEdgeFrom(e));
+                }
+                out.align();
+                for (int e = 0; e < edgeCount; e++) {
+                    out.putInt(storage.getEdgeTo(e));
+                }
+                out.align();
+                for (int e = 0; e < edgeCount; e++) {
+                    switch (storage.getWeightType()) {
+                        case INT:
+                            out.putInt(storage.getEdgeWeight(e));
+                            break;
+                        case LONG:
+                            out.putLong(storage.getEdgeWeightLong(e));
+                            break;
+                        default:
+                            out.putLong(Double.doubleToRawLongBits(storage.getEdgeWeightDouble(e)));
+                            break;
+                    }
+                }
+                out.align();
+                for (int v = 0; v < vertexCount; v++) {
+                    out.putInt(storage.getAdjacencyStart(v));
+                }
+                out.putInt(vertexCount == 0 ? 0 : storage.getAdjacencyEnd(vertexCount - 1));
+                out.align();
+                for (int slot = 0; slot < 2 * edgeCount; slot++) {
+                    out.putInt(storage.getAdjacentVertex(slot));
+                }
+                out.align();
+                for (int slot = 0; slot < 2 * edgeCount; slot++) {
+                    out.putInt(storage.getAdjacentEdge(slot));
+                }
+                out.align();
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(FORMAT).putInt(graph.getId())
+                    .putInt(storage.getWeightType().ordinal())
+                    .putLong(graph.getVersion() != 0 ? graph.getVersion() : versionOf(graph))
+                    .putInt(vertexCount).putInt(edgeCount)
+                    .putLong(namesBytes)
+                    .putInt(graph.isConnected() ? 1 : 0)
+                    .putLong(out.checksum());
+                header.clear();
+                channel.write(header, 0);
+            }
+            Files.move(temp, snapshotPath(graph.getId()),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Open the snapshot of a graph if it matches the given version
+     * @return the stored graph (to be closed by the caller), or null if there
+     *         is no snapshot, it belongs to another version or it is damaged
+     */
+    public Graph open(int graphId, long version) throws IOException {
+        return open(graphId, version, true);
+    }
+
+    /**
+     * Open the latest snapshot of a graph, whatever its version
+     * @return the stored graph (to be closed by the caller), or null if there
+     *         is no snapshot or it is damaged
+     */
+    public Graph open(int graphId) throws IOException {
+        return open(graphId, 0, false);
+    }
+
+    private Graph open(int graphId, long version, boolean checkVersion) throws IOException {
+        Path path = snapshotPath(graphId);
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT || header.getInt() != graphId) {
+                return null;
+            }
+            int weightOrdinal = header.getInt();
+            if (weightOrdinal < 0 || weightOrdinal >= WeightType.values().length) {
+                return null;
+            }
+            WeightType weightType = WeightType.values()[weightOrdinal];
+            long storedVersion = header.getLong();
+            int vertexCount = header.getInt();
+            int edgeCount = header.getInt();
+            long namesBytes = header.getLong();
+            boolean connected = header.getInt() == 1;
+            long checksum = header.getLong();
+            if (checkVersion && storedVersion != version) {
+                return null; // Stale: the graph has changed since it was saved
+            }
+
+            // Section offsets, each section starts 8-byte aligned
+            long offset = HEADER_SIZE;
+            long namesOffset = offset;
+            offset = align(offset + namesBytes);
+            long fromOffset = offset;
+            offset = align(offset + 4L * edgeCount);
+            long toOffset = offset;
+            offset = align(offset + 4L * edgeCount);
+            long weightsOffset = offset;
+            offset = align(offset + (weightType == WeightType.INT ? 4L : 8L) * edgeCount);
+            long startOffset = offset;
+            offset = align(offset + 4L * (vertexCount + 1));
+            long vertexOffset = offset;
+            offset = align(offset + 8L * edgeCount);
+            long slotEdgeOffset = offset;
+            offset = align(offset + 8L * edgeCount);
+            if (offset != fileSize) {
+                return null; // Truncated or written by a different layout
+            }
+
+            MappedByteBuffer[] sections = {
+                map(channel, namesOffset, fromOffset),
+                map(channel, fromOffset, toOffset),
+                map(channel, toOffset, weightsOffset),
+                map(channel, weightsOffset, startOffset),
+                map(channel, startOffset, vertexOffset),
+                map(channel, vertexOffset, slotEdgeOffset),
+                map(channel, slotEdgeOffset, offset)
+            };
+            CRC32 crc = new CRC32();
+            for (MappedByteBuffer section : sections) {
+                crc.update(section.duplicate());
+            }
+            if (crc.getValue() != checksum) {
+                return null; // Damaged payload
+            }
+
+            ByteBuffer nameBuffer = sections[0].duplicate();
+            List<String> nodes = new ArrayList<>(vertexCount);
+            for (int v = 0; v < vertexCount; v++) {
+                byte[] name = new byte[nameBuffer.getInt()];
+                nameBuffer.get(name);
+                nodes.add(new String(name, StandardCharsets.UTF_8));
+            }
+
+            SnapshotStorage storage = new SnapshotStorage(vertexCount, edgeCount, weightType,
+                sections[1].asIntBuffer(), sections[2].asIntBuffer(), sections[3],
+                sections[4].asIntBuffer(), sections[5].asIntBuffer(), sections[6].asIntBuffer());
+            Graph graph = new Graph(graphId, nodes, storage);
+            graph.setConnected(connected);
+            graph.setVersion(storedVersion);
+            return graph;
+        }
+    }
+
+    /**
+     * Remove the snapshot of a graph
+     * @return true if a snapshot existed
+     */
+    public boolean delete(int graphId) throws IOException {
+        return Files.deleteIfExists(snapshotPath(graphId));
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long start, long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot section too large to map: " + (end - start) + " bytes");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Buffered sequential writer that keeps track of the payload CRC and of
+     * section alignment
+     */
+    private static final class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        private final CRC32 crc = new CRC32();
+        private long position;
+        private long written;
+
+        SectionWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int i = 0; i < bytes.length; i++) {
+                ensure(1);
+                buffer.put(bytes[i]);
+            }
+        }
+
+        /**
+         * Pad with zeros to the next 8-byte boundary
+         */
+        void align() throws IOException {
+            while (((written + buffer.position()) & 7) != 0) {
+                ensure(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            written += buffer.limit();
+            buffer.clear();
+        }
+
+        long checksum() {
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * Read-only GraphStorage over the memory-mapped sections of a snapshot
+     */
+    private static final class SnapshotStorage implements GraphStorage {
+        private final int vertexCount;
+        private final int edgeCount;
+        private final WeightType weightType;
+        // Set to null by close(); read once per access, see open()
+        private IntBuffer edgeFrom;
+        private IntBuffer edgeTo;
+        private IntBuffer intWeights;
+        private LongBuffer longWeights;
+        private IntBuffer adjacencyStart;
+        private IntBuffer adjacentVertex;
+        private IntBuffer adjacentEdge;
+
+        SnapshotStorage(int vertexCount, int edgeCount, WeightType weightType, IntBuffer edgeFrom,
+                        IntBuffer edgeTo, ByteBuffer weights, IntBuffer adjacencyStart,
+                        IntBuffer adjacentVertex, IntBuffer adjacentEdge) {
+            this.vertexCount = vertexCount;
+            this.edgeCount = edgeCount;
+            this.weightType = weightType;
+            this.edgeFrom = edgeFrom;
+            this.edgeTo = edgeTo;
+            if (weightType == WeightType.INT) {
+                this.intWeights = weights.asIntBuffer();
+            } else {
+                this.longWeights = weights.asLongBuffer();
+            }
+            this.adjacencyStart = adjacencyStart;
+            this.adjacentVertex = adjacentVertex;
+            this.adjacentEdge = adjacentEdge;
+        }
+
+        @Override
+        public int getVertexCount() {
+            return vertexCount;
+        }
+
+        @Override
+        public int getEdgeCount() {
+            return edgeCount;
+        }
+
+        @Override
+        public int getEdgeFrom(int edge) {
+            return open(edgeFrom).get(edge);
+        }
+
+        @Override
+        public int getEdgeTo(int edge) {
+            return open(edgeTo).get(edge);
+        }
+
+        @Override
+        public WeightType getWeightType() {
+            return weightType;
+        }
+
+        @Override
+        public int getEdgeWeight(int edge) {
+            if (weightType != WeightType.INT) {
+                throw new IllegalStateException("Graph weights are " + weightType + ", not INT");
+            }
+            return open(intWeights).get(edge);
+        }
+
+        @Override
+        public long getEdgeWeightLong(int edge) {
+            if (weightType == WeightType.INT) {
+                return open(intWeights).get(edge);
+            }
+            if (weightType == WeightType.DOUBLE) {
+                throw new IllegalStateException("Graph weights are DOUBLE, not integers");
+            }
+            return open(longWeights).get(edge);
+        }
+
+        @Override
+        public double getEdgeWeightDouble(int edge) {
+            if (weightType == WeightType.DOUBLE) {
+                return Double.longBitsToDouble(open(longWeights).get(edge));
+            }
+            return getEdgeWeightLong(edge);
+        }
+
+        @Override
+        public int getAdjacencyStart(int vertex) {
+            return open(adjacencyStart).get(vertex);
+        }
+
+        @Override
+        public int getAdjacencyEnd(int vertex) {
+            return open(adjacencyStart).get(vertex + 1);
+        }
+
+        @Override
+        public int getAdjacentVertex(int slot) {
+            return open(adjacentVertex).get(slot);
+        }
+
+        @Override
+        public int getAdjacentEdge(int slot) {
+            return open(adjacentEdge).get(slot);
+        }
+
+        @Override
+        public boolean isOffHeap() {
+            return true;
+        }
+
+        /**
+         * Drop the mappings; the file is unmapped once the buffers are
+         * collected. Reads racing with close() complete or fail with
+         * IllegalStateException, as each takes its buffer once.
+         */
+        @Override
+        public void close() {
+            edgeFrom = edgeTo = intWeights = null;
+            longWeights = null;
+            adjacencyStart = adjacentVertex = adjacentEdge = null;
+        }
+
+        private static IntBuffer open(IntBuffer buffer) {
+            if (buffer == null) {
+                throw new IllegalStateException("Graph snapshot has been closed");
+            }
+            return buffer;
+        }
+
+        private static LongBuffer open(LongBuffer buffer) {
+            if (buffer == null) {
+                throw new IllegalStateException("Graph snapshot has been closed");
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+import java.util.*;
+
+/**
+ * Updates the MST of a graph after a GraphDelta instead of recomputing it.
+ * <p>
+ * Base tree edges that were neither removed nor made heavier stay in the tree
+ * of the graph without the added and lightened edges (each is still the
+ * lightest edge across its cut). If tree edges were lost, Borůvka rounds
+ * reconnect the pieces. Every edge between two pieces touches a piece other
+ * than the largest, so only the base edges of the vertices outside the
+ * largest piece are scanned (through the base graph's adjacency), once; the
+ * rounds then rescan just the crossing edges found. Added and lightened edges
+ * can then only displace tree edges, so the final tree is found by Kruskal
+ * over that tree plus the changed edges, about V + k edges instead of E,
+ * sorted with EdgeOrder.sort.
+ * <p>
+ * Comparisons use the canonical edge order of the patched graph, so the
+ * result is the same tree the other engines compute from scratch.
+ */
+public class IncrementalMST {
+
+    /**
+     * @param patch the delta applied to its base graph
+     * @param baseResult MST of the base graph, built by one of the engines; its
+     *                   edge indices are checked against the base graph
+     * @return MST of the patched graph, or null if the base result cannot be
+     *         reused (in which case the graph has to be solved from scratch)
+     */
+    public static MSTResult update(GraphDelta.Patch patch, MSTResult baseResult) {
+        return update(patch, baseResult, null);
+    }
+
+    /**
+     * Update the MST, checking the control for deadline and cancellation in
+     * the Borůvka scans and the final Kruskal pass (the candidate sort is only
+     * checked before and after it runs)
+     * @param control deadline, cancellation and progress, or null
+     * @return MST of the patched graph, or null if the base result cannot be reused
+     * @throws MSTCancelledException if the control stopped the run
+     */
+    public static MSTResult update(GraphDelta.Patch patch, MSTResult baseResult, MSTControl control) {
+        long startTime = System.nanoTime();
+        int operationsCount = 0;
+
+        Graph base = patch.getBase();
+        Graph graph = patch.getGraph();
+        int[] baseTree = baseResult.getEdgeIndices(base);
+        if (baseTree == null || baseTree.length != base.getVertexCount() - 1) {
+            return null; // Not a spanning tree of this base graph
+        }
+
+        GraphStorage baseStorage = base.getStorage();
+        GraphStorage storage = graph.getStorage();
+        int vertexCount = storage.getVertexCount();
+        int edgeCount = storage.getEdgeCount();
+        int firstAddedEdge = patch.getFirstAddedEdge();
+
+        if (vertexCount == 0) {
+            return new MSTResult(new ArrayList<>(), 0, 0, 0);
+        }
+        if (control != null) {
+            control.checkpoint(0, vertexCount);
+        }
+
+        // Reweighted edges become heavier (weaker) or lighter (stronger); the
+        // flags are kept per reweighted edge, found by binary search
+        int[] reweighted = patch.getReweightedEdges();
+        int[] change = new int[reweighted.length];
+        boolean[] reweightedInTree = new boolean[reweighted.length];
+        for (int i = 0; i < reweighted.length; i++) {
+            change[i] = compareWeights(storage, reweighted[i], baseStorage, patch.getBaseIndex(reweighted[i]));
+        }
+
+        // Surviving tree edges that did not get heavier
+        UnionFind forest = new UnionFind(vertexCount);
+        int[] candidates = new int[vertexCount - 1 + (edgeCount - firstAddedEdge) + reweighted.length];
+        int candidateCount = 0;
+        boolean treeLost = false;
+        int components = vertexCount;
+        for (int baseEdge : baseTree) {
+            int edge = patch.getNewIndex(baseEdge);
+            operationsCount++; // Array lookup
+            int slot = edge == -1 || reweighted.length == 0 ? -1 : Arrays.binarySearch(reweighted, edge);
+            if (edge == -1 || (slot >= 0 && change[slot] > 0)) {
+                treeLost = true;
+                continue;
+            }
+            if (slot >= 0) {
+                reweightedInTree[slot] = true;
+            }
+            forest.union(storage.getEdgeFrom(edge), storage.getEdgeTo(edge));
+            components--;
+            candidates[candidateCount++] = edge;
+        }
+
+        // Reconnect the forest with Borůvka rounds over the surviving base edges
+        // between its pieces, leaving out lightened non-tree edges (they are
+        // added back below)
+        long rounds = 0;
+        long edgesScanned = 0;
+        int countdown = MSTControl.CHECK_INTERVAL;
+        if (treeLost) {
+            // The largest piece of the base vertices; vertices added by the delta
+            // have no base edges
+            int baseVertexCount = baseStorage.getVertexCount();
+            int[] size = new int[vertexCount];
+            int largest = forest.find(0);
+            for (int v = 0; v < baseVertexCount; v++) {
+                int root = forest.find(v);
+                if (++size[root] > size[largest]) {
+                    largest = root;
+                }
+            }
+
+            int[] crossing = new int[16];
+            int crossingCount = 0;
+            for (int v = 0; v < baseVertexCount; v++) {
+                if (forest.find(v) == largest) {
+                    continue;
+                }
+                for (int slot = baseStorage.getAdjacencyStart(v); slot < baseStorage.getAdjacencyEnd(v); slot++) {
+                    operationsCount++; // Iteration
+                    edgesScanned++;
+                    if (control != null && --countdown == 0) {
+                        countdown = MSTControl.CHECK_INTERVAL;
+                        control.checkpoint(edgesScanned, components);
+                    }
+                    int edge = patch.getNewIndex(baseStorage.getAdjacentEdge(slot));
+                    int neighbour = baseStorage.getAdjacentVertex(slot);
+                    // An edge between two small pieces is seen from both ends; keep it once
+                    if (edge == -1 || (neighbour < v && forest.find(neighbour) != largest)
+                            || isLightenedOutsideTree(reweighted, change, reweightedInTree, edge)) {
+                        continue;
+                    }
+                    if (forest.find(neighbour) != forest.find(v)) {
+                        if (crossingCount == crossing.length) {
+                            crossing = Arrays.copyOf(crossing, crossingCount * 2);
+                        }
+                        crossing[crossingCount++] = edge;
+                    }
+                }
+            }
+
+            int[] cheapest = new int[vertexCount];
+            while (true) {
+                rounds++;
+                Arrays.fill(cheapest, -1);
+                int kept = 0;
+                for (int i = 0; i < crossingCount; i++) {
+                    operationsCount++; // Iteration
+                    edgesScanned++;
+                    if (control != null && --countdown == 0) {
+                        countdown = MSTControl.CHECK_INTERVAL;
+                        control.checkpoint(edgesScanned, components);
+                    }
+                    int edge = crossing[i];
+                    int root1 = forest.find(storage.getEdgeFrom(edge));
+                    int root2 = forest.find(storage.getEdgeTo(edge));
+                    if (root1 == root2) {
+                        continue; // Inside a piece from now on
+                    }
+                    crossing[kept++] = edge;
+                    if (cheapest[root1] == -1 || EdgeOrder.compare(storage, edge, cheapest[root1]) < 0) {
+                        cheapest[root1] = edge;
+                    }
+                    if (cheapest[root2] == -1 || EdgeOrder.compare(storage, edge, cheapest[root2]) < 0) {
+                        cheapest[root2] = edge;
+                    }
+                }
+                crossingCount = kept;
+
+                boolean merged = false;
+                for (int v = 0; v < vertexCount; v++) {
+                    int edge = cheapest[v];
+                    if (edge != -1 && forest.union(storage.getEdgeFrom(edge), storage.getEdgeTo(edge))) {
+                        components--;
+                        candidates[candidateCount++] = edge;
+                        merged = true;
+                    }
+                }
+                if (!merged) {
+                    break;
+                }
+            }
+        }
+
+        // Added and lightened edges compete with that tree
+        for (int edge = firstAddedEdge; edge < edgeCount; edge++) {
+            candidates[candidateCount++] = edge;
+        }
+        for (int i = 0; i < reweighted.length; i++) {
+            if (change[i] < 0 && !reweightedInTree[i]) {
+                candidates[candidateCount++] = reweighted[i];
+            }
+        }
+
+        if (control != null) {
+            control.checkpoint(edgesScanned, components);
+        }
+        int[] sorted = EdgeOrder.sort(storage, candidates, candidateCount);
+        operationsCount += candidateCount * (int) (Math.log(candidateCount + 1) / Math.log(2)); // Sort complexity
+        if (control != null) {
+            control.checkpoint(edgesScanned, components);
+        }
+
+        UnionFind uf = new UnionFind(vertexCount);
+        int[] mstEdges = new int[vertexCount - 1];
+        int mstSize = 0;
+        for (int i = 0; i < candidateCount && mstSize < vertexCount - 1; i++) {
+            operationsCount++; // Iteration
+            edgesScanned++;
+            if (control != null && --countdown == 0) {
+                countdown = MSTControl.CHECK_INTERVAL;
+                control.checkpoint(edgesScanned, vertexCount - mstSize);
+            }
+            int edge = sorted[i];
+            if (uf.union(storage.getEdgeFrom(edge), storage.getEdgeTo(edge))) {
+                mstEdges[mstSize++] = edge;
+            }
+        }
+        operationsCount += forest.getOperationsCount() + uf.getOperationsCount();
+        if (mstSize != vertexCount - 1) {
+            return null; // Disconnected: the engines report that from scratch
+        }
+        graph.setConnected(true);
+
+        MSTResult result = MSTResult.forTree(graph, mstEdges, mstSize, operationsCount, startTime);
+        result.putMetric("delta_edges", patch.getDelta().size());
+        result.putMetric("candidate_edges", candidateCount);
+        result.putMetric("boruvka_rounds", rounds);
+        return result;
+    }
+
+    /**
+     * True for a reweighted edge that got lighter and is not in the base tree
+     */
+    private static boolean isLightenedOutsideTree(int[] reweighted, int[] change, boolean[] reweightedInTree,
+                                                  int edge) {
+        if (reweighted.length == 0) {
+            return false;
+        }
+        int slot = Arrays.binarySearch(reweighted, edge);
+        return slot >= 0 && change[slot] < 0 && !reweightedInTree[slot];
+    }
+
+    private static int compareWeights(GraphStorage storage1, int edge1, GraphStorage storage2, int edge2) {
+        if (storage1.getWeightType() == WeightType.DOUBLE || storage2.getWeightType() == WeightType.DOUBLE) {
+            return Double.compare(storage1.getEdgeWeightDouble(edge1), storage2.getEdgeWeightDouble(edge2));
+        }
+        return Long.compare(storage1.getEdgeWeightLong(edge1), storage2.getEdgeWeightLong(edge2));
+    }
+}
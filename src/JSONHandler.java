@@ -15,42 +15,131 @@ public class JSONHandler {
         return SimpleJSONParser.parseGraphs(filename);
     }
     
+    /**
+     * Read graphs from JSON file, resolving delta input against the cache
+     */
+    public static List<Graph> readGraphsFromJSON(String filename, GraphCache cache) throws IOException {
+        List<Graph> graphs = new ArrayList<>();
+        SimpleJSONParser.parseGraphs(filename, graphs::add, cache);
+        return graphs;
+    }
+    
     /**
      * Write results to JSON file
      */
     public static void writeResultsToJSON(String filename, List<GraphResult> results) throws IOException {
-        StringBuilder json = new StringBuilder();
-        json.append("{\n  \"results\": [\n");
+        try (ResultsWriter writer = new ResultsWriter(filename)) {
+            for (GraphResult result : results) {
+                writer.write(result);
+            }
+        }
+    }
+    
+    /**
+     * Incremental writer for the results file, used to emit results one at a
+     * time without holding the whole batch in memory
+     */
+    public static class ResultsWriter implements Closeable {
+        private final Writer out;
+        private int written;
         
-        for (int i = 0; i < results.size(); i++) {
-            GraphResult result = results.get(i);
-            json.append("    {\n");
-            json.append("      \"graph_id\": ").append(result.getGraphId()).append(",\n");
-            json.append("      \"input_stats\": {\n");
-            json.append("        \"vertices\": ").append(result.getVertices()).append(",\n");
-            json.append("        \"edges\": ").append(result.getEdges()).append("\n");
-            json.append("      },\n");
-            
-            json.append("      \"prim\": ");
-            appendAlgorithmResult(json, result.getPrimResult());
-            json.append(",\n");
-            
-            json.append("      \"kruskal\": ");
-            appendAlgorithmResult(json, result.getKruskalResult());
-            json.append("\n");
-            
-            json.append("    }");
-            if (i < results.size() - 1) {
-                json.append(",");
+        public ResultsWriter(String filename) throws IOException {
+            out = new BufferedWriter(new FileWriter(filename));
+            out.write("{\n  \"results\": [\n");
+        }
+        
+        public void write(GraphResult result) throws IOException {
+            StringBuilder json = new StringBuilder();
+            if (written > 0) {
+                json.append(",\n");
             }
-            json.append("\n");
+            appendGraphResult(json, result);
+            out.write(json.toString());
+            written++;
         }
         
-        json.append("  ]\n}");
+        @Override
+        public void close() throws IOException {
+            try {
+                if (written > 0) {
+                    out.write("\n");
+                }
+                out.write("  ]\n}");
+            } finally {
+                out.close();
+            }
+        }
+    }
+    
+    private static void appendGraphResult(StringBuilder json, GraphResult result) {
+        json.append("    {\n");
+        json.append("      \"graph_id\": ").append(result.getGraphId()).append(",\n");
+        json.append("      \"input_stats\": {\n");
+        json.append("        \"vertices\": ").append(result.getVertices()).append(",\n");
+        json.append("        \"edges\": ").append(result.getEdges()).append("\n");
+        json.append("      },\n");
         
-        try (FileWriter file = new FileWriter(filename)) {
-            file.write(json.toString());
+        if (result.isIncremental()) {
+            json.append("      \"source\": \"incremental\",\n");
         }
+        if (result.getSelectedEngine() != null || result.isIncremental()) {
+            if (result.getSelectedEngine() != null) {
+                json.append("      \"selected_engine\": \"").append(result.getSelectedEngine().getKey()).append("\",\n");
+            }
+            if (result.isVerifierRun() || result.getResultCount() > 1) {
+                json.append("      \"verified\": ").append(result.isVerified()).append(",\n");
+            }
+            if (result.getVerificationProblem() != null) {
+                json.append("      \"verification_error\": ");
+                appendString(json, result.getVerificationProblem());
+                json.append(",\n");
+            }
+        }
+        
+        MemoryPlan plan = result.getMemoryPlan();
+        if (plan != null) {
+            json.append("      \"memory\": {\n");
+            json.append("        \"budget_bytes\": ").append(plan.getBudgetBytes()).append(",\n");
+            json.append("        \"estimated_bytes\": ").append(plan.getEstimatedBytes()).append(",\n");
+            json.append("        \"fits\": ").append(plan.fits()).append(",\n");
+            json.append("        \"representation\": \"").append(plan.getRepresentation().getKey()).append("\",\n");
+            json.append("        \"engine\": \"")
+                .append(plan.getEngine() != null ? plan.getEngine().getKey() : "in-memory").append("\",\n");
+            json.append("        \"process_peak_heap_bytes\": ").append(result.getProcessPeakHeapBytes()).append("\n");
+            json.append("      },\n");
+        }
+        
+        if (result.getFailure() != null) {
+            json.append("      \"error\": ");
+            appendString(json, result.getFailure());
+            json.append(result.getResultCount() == 0 && result.getStopped() == null ? "\n" : ",\n");
+        }
+        
+        MSTCancelledException stopped = result.getStopped();
+        if (stopped != null) {
+            json.append("      \"stopped\": {\n");
+            json.append("        \"engine\": \"").append(result.getStoppedKey()).append("\",\n");
+            json.append("        \"reason\": \"").append(stopped.isDeadlineExceeded() ? "time_limit" : "cancelled").append("\",\n");
+            json.append("        \"edges_processed\": ").append(stopped.getEdgesProcessed()).append(",\n");
+            json.append("        \"components_remaining\": ").append(stopped.getComponentsRemaining()).append("\n");
+            json.append(result.getResultCount() == 0 ? "      }\n" : "      },\n");
+        }
+        
+        if (result.isIncremental()) {
+            json.append("      \"incremental\": ");
+            appendAlgorithmResult(json, result.getIncrementalResult());
+            json.append(result.getResults().isEmpty() ? "\n" : ",\n");
+        }
+        
+        Iterator<Map.Entry<MSTEngine, MSTResult>> entries = result.getResults().entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<MSTEngine, MSTResult> entry = entries.next();
+            json.append("      \"").append(entry.getKey().getKey()).append("\": ");
+            appendAlgorithmResult(json, entry.getValue());
+            json.append(entries.hasNext() ? ",\n" : "\n");
+        }
+        
+        json.append("    }");
     }
     
     private static void appendAlgorithmResult(StringBuilder json, MSTResult result) {
@@ -60,9 +149,11 @@ public class JSONHandler {
         List<Edge> edges = result.getMstEdges();
         for (int i = 0; i < edges.size(); i++) {
             Edge edge = edges.get(i);
-            json.append("          {\"from\": \"").append(edge.getFrom())
-                .append("\", \"to\": \"").append(edge.getTo())
-                .append("\", \"weight\": ").append(edge.getWeight()).append("}");
+            json.append("          {\"from\": ");
+            appendString(json, edge.getFrom());
+            json.append(", \"to\": ");
+            appendString(json, edge.getTo());
+            json.append(", \"weight\": ").append(edge.formatWeight()).append("}");
             if (i < edges.size() - 1) {
                 json.append(",");
             }
@@ -70,35 +161,227 @@ public class JSONHandler {
         }
         
         json.append("        ],\n");
-        json.append("        \"total_cost\": ").append(result.getTotalCost()).append(",\n");
+        json.append("        \"total_cost\": ").append(result.formatTotalCost()).append(",\n");
+        json.append("        \"fingerprint\": \"").append(result.getFingerprintHex()).append("\",\n");
         json.append("        \"operations_count\": ").append(result.getOperationsCount()).append(",\n");
         json.append("        \"execution_time_ms\": ")
-            .append(String.format("%.2f", result.getExecutionTimeMs())).append("\n");
+            .append(String.format("%.2f", result.getExecutionTimeMs()));
+        
+        if (!result.getMetrics().isEmpty()) {
+            json.append(",\n        \"metrics\": {");
+            Iterator<Map.Entry<String, Long>> metrics = result.getMetrics().entrySet().iterator();
+            while (metrics.hasNext()) {
+                Map.Entry<String, Long> metric = metrics.next();
+                json.append("\"").append(metric.getKey()).append("\": ").append(metric.getValue());
+                if (metrics.hasNext()) {
+                    json.append(", ");
+                }
+            }
+            json.append("}");
+        }
+        json.append("\n");
         json.append("      }");
     }
+    
+    /**
+     * Append a JSON string literal: quotes, backslashes and control
+     * characters in the value are escaped
+     */
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
 }
 
 /**
- * Container class for storing results of both algorithms for a single graph
+ * Container class for storing the results of the MST engines run on a single graph.
+ * Engines that were not run simply have no result.
  */
 class GraphResult {
     private int graphId;
     private int vertices;
     private int edges;
-    private MSTResult primResult;
-    private MSTResult kruskalResult;
+    private MSTEngine selectedEngine;
+    private MSTResult incrementalResult;
+    private Map<MSTEngine, MSTResult> results = new EnumMap<>(MSTEngine.class);
+    private boolean verifierRun;
+    private String verifierProblem;
+    private MSTEngine stoppedEngine;
+    private MemoryPlan memoryPlan;
+    private long processPeakHeapBytes;
+    private MSTCancelledException stopped;
+    private String failure;
     
     public GraphResult(int graphId, int vertices, int edges, MSTResult primResult, MSTResult kruskalResult) {
         this.graphId = graphId;
         this.vertices = vertices;
         this.edges = edges;
-        this.primResult = primResult;
-        this.kruskalResult = kruskalResult;
+        addResult(MSTEngine.PRIM, primResult);
+        addResult(MSTEngine.KRUSKAL, kruskalResult);
     }
     
+    /**
+     * Result of a single selected engine; others may be added later for verification
+     */
+    public GraphResult(int graphId, int vertices, int edges, MSTEngine selectedEngine, MSTResult selectedResult) {
+        this.graphId = graphId;
+        this.vertices = vertices;
+        this.edges = edges;
+        this.selectedEngine = selectedEngine;
+        addResult(selectedEngine, selectedResult);
+    }
+    
+    /**
+     * Result updated from the base graph's MST for delta input (IncrementalMST)
+     * rather than computed by an engine; engines may be added later to check it
+     */
+    public GraphResult(int graphId, int vertices, int edges, MSTResult incrementalResult) {
+        this.graphId = graphId;
+        this.vertices = vertices;
+        this.edges = edges;
+        this.incrementalResult = incrementalResult;
+    }
+    
+    public void addResult(MSTEngine engine, MSTResult result) {
+        if (result != null) {
+            results.put(engine, result);
+        }
+    }
+    
+    /**
+     * True if more than one engine ran and they all produced the same tree
+     * (same total cost and fingerprint)
+     */
+    public boolean isCrossChecked() {
+        List<MSTResult> all = getAllResults();
+        if (all.size() < 2) return false;
+        MSTResult first = all.get(0);
+        for (MSTResult result : all) {
+            if (result.getTotalCost() != first.getTotalCost()
+                    || result.getFingerprint() != first.getFingerprint()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Record the MSTVerifier outcome for the selected engine's result
+     * @param problem the problem found, or null if the result passed
+     */
+    public void setVerification(String problem) {
+        verifierRun = true;
+        verifierProblem = problem;
+    }
+    
+    /**
+     * True if at least one check ran on the selected result and it passed
+     * all of them (the MSTVerifier and, if a second engine ran, the cross-check)
+     */
+    public boolean isVerified() {
+        if (!verifierRun && getResultCount() < 2) return false;
+        return (!verifierRun || verifierProblem == null) && (getResultCount() < 2 || isCrossChecked());
+    }
+    
+    /**
+     * The result that stands for this graph: the incremental update, else the
+     * selected engine's result, else (when all engines were compared) Prim's
+     * @return the result, or null if that engine did not finish
+     */
+    public MSTResult getPrimaryResult() {
+        if (incrementalResult != null) {
+            return incrementalResult;
+        }
+        return results.get(selectedEngine != null ? selectedEngine : MSTEngine.PRIM);
+    }
+    
+    /**
+     * Incremental result (if any) followed by the engine results
+     */
+    public List<MSTResult> getAllResults() {
+        List<MSTResult> all = new ArrayList<>(getResultCount());
+        if (incrementalResult != null) {
+            all.add(incrementalResult);
+        }
+        all.addAll(results.values());
+        return all;
+    }
+    
+    public int getResultCount() {
+        return results.size() + (incrementalResult != null ? 1 : 0);
+    }
+    
+    /**
+     * Record that the selected engine failed, so the graph is reported with
+     * the error instead of ending the batch
+     */
+    public void setFailure(String failure) {
+        this.failure = failure;
+    }
+    
+    /**
+     * Record that an engine was stopped by its MSTControl before finishing
+     * @param engine the engine, or null if the incremental update was stopped
+     */
+    public void setStopped(MSTEngine engine, MSTCancelledException stopped) {
+        this.stoppedEngine = engine;
+        this.stopped = stopped;
+    }
+    
+    /**
+     * Record the memory plan the graph was solved under and the JVM's peak
+     * heap use while it was converted and solved (see MemoryPlan.resetPeakHeap)
+     */
+    public void setMemoryPlan(MemoryPlan plan, long processPeakHeapBytes) {
+        this.memoryPlan = plan;
+        this.processPeakHeapBytes = processPeakHeapBytes;
+    }
+    
+    /** Memory plan, or null if no budget was set */
+    public MemoryPlan getMemoryPlan() { return memoryPlan; }
+    /** Peak heap use of the whole JVM, not only of this graph */
+    public long getProcessPeakHeapBytes() { return processPeakHeapBytes; }
+    /** Engine stopped by the time limit or cancellation, or null */
+    public MSTEngine getStoppedEngine() { return stoppedEngine; }
+    /** Output key of what was stopped: an engine, or "incremental" */
+    public String getStoppedKey() { return stoppedEngine != null ? stoppedEngine.getKey() : "incremental"; }
+    public String getStoppedDisplayName() {
+        return stoppedEngine != null ? stoppedEngine.getDisplayName() : "Incremental update";
+    }
+    /** Why and how far the stopped engine got, or null */
+    public MSTCancelledException getStopped() { return stopped; }
+    /** Why the selected engine failed without a result (e.g. unreadable run files), or null */
+    public String getFailure() { return failure; }
+    public boolean isVerifierRun() { return verifierRun; }
+    /** Problem found by the MSTVerifier, or null */
+    public String getVerificationProblem() { return verifierProblem; }
     public int getGraphId() { return graphId; }
     public int getVertices() { return vertices; }
     public int getEdges() { return edges; }
-    public MSTResult getPrimResult() { return primResult; }
-    public MSTResult getKruskalResult() { return kruskalResult; }
+    /** Engine chosen for production use, or null when all engines were compared or the result is incremental */
+    public MSTEngine getSelectedEngine() { return selectedEngine; }
+    /** True if the result was updated from the base graph's MST instead of computed by an engine */
+    public boolean isIncremental() { return incrementalResult != null; }
+    /** Incremental result, or null */
+    public MSTResult getIncrementalResult() { return incrementalResult; }
+    public MSTResult getResult(MSTEngine engine) { return results.get(engine); }
+    public Map<MSTEngine, MSTResult> getResults() { return Collections.unmodifiableMap(results); }
+    public MSTResult getPrimResult() { return results.get(MSTEngine.PRIM); }
+    public MSTResult getKruskalResult() { return results.get(MSTEngine.KRUSKAL); }
 }
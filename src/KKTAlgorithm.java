@@ -0,0 +1,286 @@
+import java.util.*;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Randomized MST in the style of Karger-Klein-Tarjan, expected linear in E
+ * apart from the path-maximum pass.
+ * <p>
+ * Each level runs two Borůvka steps (their edges are in the MST) and
+ * contracts the components, samples every remaining edge with probability
+ * 1/2, finds the spanning forest F of the sample recursively, drops the edges
+ * that are heavier than every edge on their F-path (they cannot be in the
+ * MST) and recurses on the rest. Only about 2V edges are expected to survive
+ * the filter, so no level sorts the full edge list. Small subproblems run
+ * Borůvka to completion.
+ * <p>
+ * Edges are compared with EdgeOrder.compare, so the result is the same
+ * canonical tree as from the other engines without building the full order.
+ */
+public class KKTAlgorithm {
+
+    /**
+     * Subproblems with at most this many edges are finished by Borůvka
+     */
+    private static final int BASE_CASE_EDGES = 256;
+
+    /**
+     * Work counters shared by all recursion levels
+     */
+    private static final class Context {
+        final GraphStorage storage;
+        final IntBinaryOperator order;
+        final SplittableRandom random;
+        final MSTControl control;
+        long operationsCount;
+        long edgesScanned;
+        long sampledEdges;
+        long heavyEdges;
+        int maxDepth;
+
+        Context(GraphStorage storage, long seed, MSTControl control) {
+            this.storage = storage;
+            this.order = (a, b) -> EdgeOrder.compare(storage, a, b);
+            this.random = new SplittableRandom(seed);
+            this.control = control;
+        }
+
+        /**
+         * Checkpoint between the passes of a level
+         * @param components trees left in the current subproblem
+         */
+        void checkpoint(int components) {
+            if (control != null) {
+                control.checkpoint(edgesScanned, components);
+            }
+        }
+    }
+
+    /**
+     * Find MST with the randomized sampling algorithm
+     * @param graph Input graph
+     * @return MSTResult containing MST edges and statistics
+     */
+    public static MSTResult findMST(Graph graph) {
+        return findMST(graph, null);
+    }
+
+    /**
+     * Find MST with the randomized sampling algorithm, checking the control
+     * for deadline and cancellation on every recursion level and Borůvka step
+     * @param control deadline, cancellation and progress, or null
+     * @throws MSTCancelledException if the control stopped the run
+     */
+    public static MSTResult findMST(Graph graph, MSTControl control) {
+        long startTime = System.nanoTime();
+
+        GraphStorage storage = graph.getStorage();
+        int vertexCount = storage.getVertexCount();
+        int edgeCount = storage.getEdgeCount();
+
+        if (vertexCount == 0 || !graph.isConnected()) {
+            return new MSTResult(new ArrayList<>(), 0, 0, 0);
+        }
+
+        if (control != null) {
+            control.checkpoint(0, vertexCount);
+        }
+
+        // Edge list without self-loops, labelled by edge index
+        int[] from = new int[edgeCount];
+        int[] to = new int[edgeCount];
+        int[] edges = new int[edgeCount];
+        int count = 0;
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int u = storage.getEdgeFrom(edge);
+            int v = storage.getEdgeTo(edge);
+            if (u != v) {
+                from[count] = u;
+                to[count] = v;
+                edges[count++] = edge;
+            }
+        }
+
+        // The tree does not depend on the seed, only the work done to find it
+        Context context = new Context(storage, graph.getId(), control);
+        IntList selected = spanningForest(context, vertexCount, from, to, edges, count, 0);
+
+        // Report tree edges in canonical order, like Kruskal
+        Integer[] sorted = new Integer[selected.size];
+        for (int i = 0; i < selected.size; i++) {
+            sorted[i] = edges[selected.values[i]];
+        }
+        Arrays.sort(sorted, (a, b) -> EdgeOrder.compare(storage, a, b));
+        int[] mstEdges = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            mstEdges[i] = sorted[i];
+        }
+        context.operationsCount += sorted.length * (int) (Math.log(sorted.length + 1) / Math.log(2)); // Sort complexity
+
+        MSTResult result = MSTResult.forTree(graph, mstEdges, mstEdges.length,
+            (int) Math.min(context.operationsCount, Integer.MAX_VALUE), startTime);
+        result.putMetric("sampled_edges", context.sampledEdges);
+        result.putMetric("heavy_edges", context.heavyEdges);
+        result.putMetric("recursion_depth", context.maxDepth);
+        return result;
+    }
+
+    /**
+     * Minimum spanning forest of a multigraph without self-loops
+     * @return indices into the given arrays of the forest edges
+     */
+    private static IntList spanningForest(Context context, int vertexCount, int[] from, int[] to,
+                                          int[] edges, int count, int depth) {
+        context.maxDepth = Math.max(context.maxDepth, depth);
+        context.checkpoint(vertexCount);
+        IntList forest = new IntList(Math.min(count, vertexCount));
+        if (count == 0) {
+            return forest;
+        }
+
+        UnionFind uf = new UnionFind(vertexCount);
+        boolean baseCase = count <= BASE_CASE_EDGES;
+        int[] cheapest = new int[vertexCount];
+        for (int step = 0; baseCase || step < 2; step++) {
+            if (!boruvkaStep(context, uf, cheapest, from, to, edges, count, forest)) {
+                break;
+            }
+            context.checkpoint(vertexCount - forest.size);
+        }
+        context.operationsCount += uf.getOperationsCount();
+        if (baseCase) {
+            return forest;
+        }
+
+        // Contract the Borůvka components; edges inside a component are dropped
+        int[] label = new int[vertexCount];
+        Arrays.fill(label, -1);
+        int contracted = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            int root = uf.find(v);
+            if (label[root] == -1) {
+                label[root] = contracted++;
+            }
+            label[v] = label[root];
+        }
+        int[] from2 = new int[count];
+        int[] to2 = new int[count];
+        int[] edges2 = new int[count];
+        int[] origin2 = new int[count];
+        int count2 = 0;
+        for (int i = 0; i < count; i++) {
+            context.operationsCount++; // Iteration
+            int u = label[from[i]];
+            int v = label[to[i]];
+            if (u != v) {
+                from2[count2] = u;
+                to2[count2] = v;
+                edges2[count2] = edges[i];
+                origin2[count2++] = i;
+            }
+        }
+        if (count2 == 0) {
+            return forest;
+        }
+
+        // Sample half of the edges and find the sample's spanning forest F
+        int[] sampleFrom = new int[count2];
+        int[] sampleTo = new int[count2];
+        int[] sampleEdges = new int[count2];
+        int sampleCount = 0;
+        for (int i = 0; i < count2; i++) {
+            if (context.random.nextBoolean()) {
+                sampleFrom[sampleCount] = from2[i];
+                sampleTo[sampleCount] = to2[i];
+                sampleEdges[sampleCount++] = edges2[i];
+            }
+        }
+        context.sampledEdges += sampleCount;
+        IntList sampleForest = spanningForest(context, contracted, sampleFrom, sampleTo, sampleEdges,
+            sampleCount, depth + 1);
+        int[] forestFrom = new int[sampleForest.size];
+        int[] forestTo = new int[sampleForest.size];
+        int[] forestEdges = new int[sampleForest.size];
+        for (int i = 0; i < sampleForest.size; i++) {
+            int index = sampleForest.values[i];
+            forestFrom[i] = sampleFrom[index];
+            forestTo[i] = sampleTo[index];
+            forestEdges[i] = sampleEdges[index];
+        }
+
+        // Keep the F-light edges: not heavier than the heaviest edge on their F-path
+        int[] pathMax = ForestPathMax.query(contracted, forestFrom, forestTo, forestEdges, sampleForest.size,
+            from2, to2, count2, context.order);
+        context.operationsCount += contracted + sampleForest.size + count2; // Offline LCA pass
+        context.edgesScanned += count2;
+        context.checkpoint(contracted);
+        int lightCount = 0;
+        for (int i = 0; i < count2; i++) {
+            if (pathMax[i] == ForestPathMax.NO_PATH || context.order.applyAsInt(edges2[i], pathMax[i]) <= 0) {
+                from2[lightCount] = from2[i];
+                to2[lightCount] = to2[i];
+                edges2[lightCount] = edges2[i];
+                origin2[lightCount++] = origin2[i];
+            }
+        }
+        context.heavyEdges += count2 - lightCount;
+
+        IntList rest = spanningForest(context, contracted, from2, to2, edges2, lightCount, depth + 1);
+        for (int i = 0; i < rest.size; i++) {
+            forest.add(origin2[rest.values[i]]);
+        }
+        return forest;
+    }
+
+    /**
+     * Add the cheapest edge leaving every component
+     * @return false if no component had an outgoing edge
+     */
+    private static boolean boruvkaStep(Context context, UnionFind uf, int[] cheapest, int[] from, int[] to,
+                                       int[] edges, int count, IntList forest) {
+        Arrays.fill(cheapest, -1);
+        context.edgesScanned += count;
+        for (int i = 0; i < count; i++) {
+            context.operationsCount++; // Iteration
+            int root1 = uf.find(from[i]);
+            int root2 = uf.find(to[i]);
+            if (root1 == root2) {
+                continue;
+            }
+            if (cheapest[root1] == -1 || context.order.applyAsInt(edges[i], edges[cheapest[root1]]) < 0) {
+                cheapest[root1] = i;
+            }
+            if (cheapest[root2] == -1 || context.order.applyAsInt(edges[i], edges[cheapest[root2]]) < 0) {
+                cheapest[root2] = i;
+            }
+        }
+
+        boolean merged = false;
+        for (int v = 0; v < cheapest.length; v++) {
+            int i = cheapest[v];
+            if (i != -1 && uf.union(from[i], to[i])) {
+                forest.add(i);
+                merged = true;
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Growable int array
+     */
+    private static final class IntList {
+        int[] values;
+        int size;
+
+        IntList(int capacity) {
+            values = new int[Math.max(capacity, 1)];
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
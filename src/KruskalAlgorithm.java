@@ -11,40 +11,64 @@ public class KruskalAlgorithm {
      * @return MSTResult containing MST edges and statistics
      */
     public static MSTResult findMST(Graph graph) {
+        return findMST(graph, null);
+    }
+    
+    /**
+     * Find MST using Kruskal's algorithm, checking the control for deadline and
+     * cancellation while edges are merged (the up-front sort is only checked
+     * before and after it runs)
+     * @param control deadline, cancellation and progress, or null
+     * @throws MSTCancelledException if the control stopped the run
+     */
+    public static MSTResult findMST(Graph graph, MSTControl control) {
         long startTime = System.nanoTime();
         int operationsCount = 0;
         
-        List<String> nodes = graph.getNodes();
-        List<Edge> edges = graph.getEdges();
+        GraphStorage storage = graph.getStorage();
+        int vertexCount = storage.getVertexCount();
+        int edgeCount = storage.getEdgeCount();
         
-        if (nodes.isEmpty() || !graph.isConnected()) {
+        if (vertexCount == 0 || !graph.isConnected()) {
             return new MSTResult(new ArrayList<>(), 0, 0, 0);
         }
         
-        List<Edge> mstEdges = new ArrayList<>();
+        int[] mstEdges = new int[vertexCount - 1];
+        int mstSize = 0;
         
-        // Sort edges by weight
-        List<Edge> sortedEdges = new ArrayList<>(edges);
-        Collections.sort(sortedEdges);
-        operationsCount += edges.size() * (int)(Math.log(edges.size()) / Math.log(2)); // Sort complexity
+        // Sort edges by weight (canonical order breaks ties deterministically)
+        if (control != null) {
+            control.checkpoint(0, vertexCount);
+        }
+        EdgeOrder order = graph.getEdgeOrder();
+        if (control != null) {
+            control.checkpoint(0, vertexCount);
+        }
+        operationsCount += edgeCount * (int)(Math.log(edgeCount) / Math.log(2)); // Sort complexity
         
         // Initialize Union-Find
-        UnionFind uf = new UnionFind(nodes);
+        UnionFind uf = new UnionFind(vertexCount);
         
         // Process edges in sorted order
-        for (Edge edge : sortedEdges) {
+        int countdown = MSTControl.CHECK_INTERVAL;
+        for (int position = 0; position < edgeCount; position++) {
             operationsCount++; // Iteration
+            if (control != null && --countdown == 0) {
+                countdown = MSTControl.CHECK_INTERVAL;
+                control.checkpoint(position, vertexCount - mstSize);
+            }
             
-            String from = edge.getFrom();
-            String to = edge.getTo();
+            int edge = order.getEdge(position);
+            int from = storage.getEdgeFrom(edge);
+            int to = storage.getEdgeTo(edge);
             
             // Check if adding this edge creates a cycle
             if (uf.union(from, to)) {
-                mstEdges.add(edge);
-                operationsCount++; // List add
+                mstEdges[mstSize++] = edge;
+                operationsCount++; // Array add
                 
                 // Stop when we have V-1 edges
-                if (mstEdges.size() == nodes.size() - 1) {
+                if (mstSize == vertexCount - 1) {
                     break;
                 }
             }
@@ -53,16 +77,7 @@ public class KruskalAlgorithm {
         // Add Union-Find operations to total count
         operationsCount += uf.getOperationsCount();
         
-        // Calculate total cost
-        int totalCost = 0;
-        for (Edge edge : mstEdges) {
-            totalCost += edge.getWeight();
-            operationsCount++; // Addition operation
-        }
-        
-        long endTime = System.nanoTime();
-        double executionTimeMs = (endTime - startTime) / 1_000_000.0;
-        
-        return new MSTResult(mstEdges, totalCost, operationsCount, executionTimeMs);
+        // Calculate total cost (long/double accumulation per weight type)
+        return MSTResult.forTree(graph, mstEdges, mstSize, operationsCount, startTime);
     }
 }
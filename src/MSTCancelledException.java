@@ -0,0 +1,34 @@
+/**
+ * Thrown by an MST engine that was stopped through its MSTControl, either by
+ * cancel() or because the deadline passed. Carries the progress made so far.
+ */
+public class MSTCancelledException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean deadlineExceeded;
+    private final long edgesProcessed;
+    private final int componentsRemaining;
+
+    public MSTCancelledException(boolean deadlineExceeded, long edgesProcessed, int componentsRemaining) {
+        super((deadlineExceeded ? "Time limit exceeded" : "Cancelled") + " after " + edgesProcessed
+            + " edges, " + componentsRemaining + " components remaining");
+        this.deadlineExceeded = deadlineExceeded;
+        this.edgesProcessed = edgesProcessed;
+        this.componentsRemaining = componentsRemaining;
+    }
+
+    /**
+     * True if the time limit passed, false if the run was cancelled
+     */
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+
+    public long getEdgesProcessed() {
+        return edgesProcessed;
+    }
+
+    public int getComponentsRemaining() {
+        return componentsRemaining;
+    }
+}
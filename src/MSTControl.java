@@ -0,0 +1,83 @@
+/**
+ * Deadline, cancellation and progress reporting for a running MST engine.
+ * <p>
+ * Engines call checkpoint() once every CHECK_INTERVAL iterations of their
+ * main loop, so the hot loop only pays for a counter decrement; the clock
+ * is read and the listener called at the checkpoints. A control can be
+ * cancelled from any thread. Engines accept a null control for unbounded runs.
+ */
+public class MSTControl {
+
+    /**
+     * Loop iterations between two checkpoints
+     */
+    public static final int CHECK_INTERVAL = 4096;
+
+    /**
+     * Receives the progress of a run at every checkpoint, on the engine's thread
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param edgesProcessed edges the engine has examined so far
+         * @param componentsRemaining trees still to be joined (1 when done)
+         */
+        void onProgress(long edgesProcessed, int componentsRemaining);
+    }
+
+    private final long startTime;
+    private final long timeLimitNanos;
+    private final ProgressListener listener;
+    private volatile boolean cancelled;
+
+    /**
+     * @param timeLimitMillis time allowed from now on, or 0 for no limit
+     * @param listener progress receiver, or null
+     */
+    public MSTControl(long timeLimitMillis, ProgressListener listener) {
+        if (timeLimitMillis < 0) {
+            throw new IllegalArgumentException("Time limit must not be negative: " + timeLimitMillis);
+        }
+        this.startTime = System.nanoTime();
+        this.timeLimitNanos = timeLimitMillis * 1_000_000L;
+        this.listener = listener;
+    }
+
+    /**
+     * Ask the engine to stop at its next checkpoint
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * True if a time limit is set and it has passed
+     */
+    public boolean isExpired() {
+        return timeLimitNanos > 0 && System.nanoTime() - startTime >= timeLimitNanos;
+    }
+
+    public double getElapsedMs() {
+        return (System.nanoTime() - startTime) / 1_000_000.0;
+    }
+
+    /**
+     * Report progress and stop the engine if it was cancelled or ran out of time
+     * @throws MSTCancelledException if the engine has to stop
+     */
+    public void checkpoint(long edgesProcessed, int componentsRemaining) {
+        if (listener != null) {
+            listener.onProgress(edgesProcessed, componentsRemaining);
+        }
+        if (cancelled) {
+            throw new MSTCancelledException(false, edgesProcessed, componentsRemaining);
+        }
+        if (isExpired()) {
+            throw new MSTCancelledException(true, edgesProcessed, componentsRemaining);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * MST algorithms available to MSTSolver
+ */
+public enum MSTEngine {
+    PRIM("prim", "Prim") {
+        @Override
+        public MSTResult findMST(Graph graph) {
+            return PrimAlgorithm.findMST(graph);
+        }
+
+        @Override
+        public MSTResult findMST(Graph graph, MSTControl control) {
+            return PrimAlgorithm.findMST(graph, control);
+        }
+    },
+    PRIM_BOUNDED("prim-bounded", "Prim (bounded heap)") {
+        @Override
+        public MSTResult findMST(Graph graph) {
+            return PrimAlgorithm.findMSTBounded(graph);
+        }
+
+        @Override
+        public MSTResult findMST(Graph graph, MSTControl control) {
+            return PrimAlgorithm.findMSTBounded(graph, PrimAlgorithm.DEFAULT_STALE_THRESHOLD, control);
+        }
+    },
+    PRIM_DENSE("prim-dense", "Prim (dense)") {
+        @Override
+        public MSTResult findMST(Graph graph) {
+            return DensePrimAlgorithm.findMST(graph);
+        }
+
+        @Override
+        public MSTResult findMST(Graph graph, MSTControl control) {
+            return DensePrimAlgorithm.findMST(graph, control);
+        }
+    },
+    PRIM_PARALLEL("prim-parallel", "Prim (parallel)") {
+        @Override
+        public MSTResult findMST(Graph graph) {
+            return ParallelPrimAlgorithm.findMST(graph);
+        }
+
+        @Override
+        public MSTResult findMST(Graph graph, MSTControl control) {
+            return ParallelPrimAlgorithm.findMST(graph, control);
+        }
+    },
+    KRUSKAL("kruskal", "Kruskal") {
+        @Override
+        public MSTResult findMST(Graph graph) {
+            return KruskalAlgorithm.findMST(graph);
+        }
+
+        @Override
+        public MSTResult findMST(Graph graph, MSTControl control) {
+            return KruskalAlgorithm.findMST(graph, control);
+        }
+    },
+    KRUSKAL_EXTERNAL("kruskal-external", "Kruskal (external memory)") {
+        @Override
+        public MSTResult findMST(Graph graph) {
+            return ExternalKruskalAlgorithm.findMST(graph);
+        }
+
+        @Override
+        public MSTResult findMST(Graph graph, MSTControl control) {
+            return ExternalKruskalAlgorithm.findMST(graph, control);
+        }
+    },
+    KKT("kkt", "KKT (randomized)") {
+        @Override
+        public MSTResult findMST(Graph graph) {
+            return KKTAlgorithm.findMST(graph);
+        }
+
+        @Override
+        public MSTResult findMST(Graph graph, MSTControl control) {
+            return KKTAlgorithm.findMST(graph, control);
+        }
+    };
+
+    /**
+     * Edge density (E / max possible E) from which Prim is preferred
+     */
+    private static final double DENSE_THRESHOLD = 0.5;
+
+    private final String key;
+    private final String displayName;
+
+    MSTEngine(String key, String displayName) {
+        this.key = key;
+        this.displayName = displayName;
+    }
+
+    public abstract MSTResult findMST(Graph graph);
+
+    /**
+     * Run under a deadline/cancellation control, checked in the engine's
+     * main loop. A run that has finished is never discarded.
+     * @param control deadline, cancellation and progress, or null
+     * @throws MSTCancelledException if the control stopped the run
+     */
+    public abstract MSTResult findMST(Graph graph, MSTControl control);
+
+    /**
+     * Name used on the command line and in the output JSON
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Cost model: pick the engine expected to be cheaper for a graph of this size.
+     * Kruskal sorts every edge up front and then does near-constant Union-Find
+     * work per edge, which is best on sparse graphs. Prim walks adjacency lists
+     * and stops touching a vertex once it joins the tree, which pays off when
+     * most vertex pairs are connected.
+     */
+    public static MSTEngine choose(int vertices, int edges) {
+        if (vertices < 2) {
+            return KRUSKAL;
+        }
+        double density = 2.0 * edges / ((double) vertices * (vertices - 1));
+        return density >= DENSE_THRESHOLD ? PRIM : KRUSKAL;
+    }
+
+    public static MSTEngine fromKey(String key) {
+        for (MSTEngine engine : values()) {
+            if (engine.key.equalsIgnoreCase(key)) {
+                return engine;
+            }
+        }
+        throw new IllegalArgumentException("Unknown engine: " + key);
+    }
+}
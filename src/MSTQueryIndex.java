@@ -0,0 +1,240 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Bottleneck (minimax) path queries served from a computed MST. The path
+ * between two vertices in the MST minimises the heaviest edge over all paths
+ * in the graph, so the heaviest tree edge on it is the answer.
+ * <p>
+ * The tree is rooted and stored as flat arrays with binary lifting: for every
+ * vertex and every power of two, the ancestor that many levels up and the
+ * heaviest edge on the way there. A query walks both endpoints up to their
+ * lowest common ancestor in O(log V). Tree edges are stored by their rank in
+ * the canonical edge order, so "heaviest" is a plain int max, and among
+ * equally heavy edges the one that is last in that order is reported.
+ * The index is immutable once built, so batched queries run in parallel.
+ */
+public class MSTQueryIndex {
+
+    /**
+     * Answer for vertices in different trees, or equal vertices (empty path)
+     */
+    public static final int NO_PATH = -1;
+
+    private final Graph graph;
+    private final GraphStorage storage;
+    private final int vertexCount;
+    private final int levels;
+    private final int[] depth;
+    private final int[] tree;
+    // Tree edges in canonical order; the index into it is an edge's rank
+    private final int[] rankToEdge;
+    // ancestor[k * V + v]: 2^k levels above v (the root maps to itself)
+    private final int[] ancestor;
+    // heaviest[k * V + v]: rank of the heaviest edge on those 2^k levels, or NO_PATH
+    private final int[] heaviest;
+
+    /**
+     * @param graph the graph the result was computed for
+     * @param result its MST (or an empty result for a disconnected graph, in
+     *               which case every vertex is a tree of its own); edge indices
+     *               stored in the result are checked against this graph
+     * @throws IllegalArgumentException if the result is not a forest of this
+     *         graph, e.g. because it was computed for another graph
+     */
+    public MSTQueryIndex(Graph graph, MSTResult result) {
+        this.graph = graph;
+        this.storage = graph.getStorage();
+        this.vertexCount = storage.getVertexCount();
+        this.levels = Math.max(1, 32 - Integer.numberOfLeadingZeros(vertexCount));
+
+        int[] treeEdges = result.getEdgeIndices(graph);
+        if (treeEdges == null) {
+            throw new IllegalArgumentException("MST edges are not edges of graph " + graph.getId());
+        }
+
+        Integer[] sorted = new Integer[treeEdges.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = treeEdges[i];
+        }
+        Arrays.sort(sorted, (a, b) -> EdgeOrder.compare(storage, a, b));
+        rankToEdge = new int[sorted.length];
+        for (int rank = 0; rank < sorted.length; rank++) {
+            rankToEdge[rank] = sorted[rank];
+        }
+
+        // Tree adjacency (CSR) holding edge ranks
+        int[] start = new int[vertexCount + 1];
+        for (int edge : rankToEdge) {
+            start[storage.getEdgeFrom(edge) + 1]++;
+            start[storage.getEdgeTo(edge) + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            start[v + 1] += start[v];
+        }
+        int[] fill = Arrays.copyOf(start, vertexCount);
+        int[] adjacentRank = new int[2 * rankToEdge.length];
+        for (int rank = 0; rank < rankToEdge.length; rank++) {
+            adjacentRank[fill[storage.getEdgeFrom(rankToEdge[rank])]++] = rank;
+            adjacentRank[fill[storage.getEdgeTo(rankToEdge[rank])]++] = rank;
+        }
+
+        // Root every tree at its first vertex and walk it breadth first
+        depth = new int[vertexCount];
+        tree = new int[vertexCount];
+        ancestor = new int[levels * vertexCount];
+        heaviest = new int[levels * vertexCount];
+        Arrays.fill(tree, -1);
+        int[] queue = new int[vertexCount];
+        for (int root = 0; root < vertexCount; root++) {
+            if (tree[root] != -1) {
+                continue;
+            }
+            tree[root] = root;
+            ancestor[root] = root;
+            heaviest[root] = NO_PATH;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = root;
+            while (head < tail) {
+                int v = queue[head++];
+                for (int slot = start[v]; slot < start[v + 1]; slot++) {
+                    int rank = adjacentRank[slot];
+                    int edge = rankToEdge[rank];
+                    int next = storage.getEdgeFrom(edge) == v ? storage.getEdgeTo(edge) : storage.getEdgeFrom(edge);
+                    if (tree[next] != -1) {
+                        if (next != ancestor[v] || rank != heaviest[v]) {
+                            throw new IllegalArgumentException("MST edges of graph " + graph.getId()
+                                + " contain a cycle");
+                        }
+                        continue;
+                    }
+                    tree[next] = root;
+                    depth[next] = depth[v] + 1;
+                    ancestor[next] = v;
+                    heaviest[next] = rank;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        // Jumps of 2^k levels are two jumps of 2^(k-1)
+        for (int k = 1; k < levels; k++) {
+            int offset = k * vertexCount;
+            int previous = offset - vertexCount;
+            for (int v = 0; v < vertexCount; v++) {
+                int middle = ancestor[previous + v];
+                ancestor[offset + v] = ancestor[previous + middle];
+                heaviest[offset + v] = Math.max(heaviest[previous + v], heaviest[previous + middle]);
+            }
+        }
+    }
+
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * True if both vertices are in the same tree of the MST forest
+     */
+    public boolean isConnected(int u, int v) {
+        return tree[u] == tree[v];
+    }
+
+    /**
+     * Lowest common ancestor of two vertices in the rooted tree
+     * @return the ancestor, or -1 for vertices in different trees
+     */
+    public int lowestCommonAncestor(int u, int v) {
+        if (!isConnected(u, v)) {
+            return -1;
+        }
+        if (depth[u] < depth[v]) {
+            int swap = u;
+            u = v;
+            v = swap;
+        }
+        for (int k = levels - 1; k >= 0; k--) {
+            if (depth[u] - (1 << k) >= depth[v]) {
+                u = ancestor[k * vertexCount + u];
+            }
+        }
+        if (u == v) {
+            return u;
+        }
+        for (int k = levels - 1; k >= 0; k--) {
+            int offset = k * vertexCount;
+            if (ancestor[offset + u] != ancestor[offset + v]) {
+                u = ancestor[offset + u];
+                v = ancestor[offset + v];
+            }
+        }
+        return ancestor[u];
+    }
+
+    /**
+     * Heaviest edge on the MST path between two vertices, in O(log V)
+     * @return the edge index, or NO_PATH for vertices in different trees or u == v
+     */
+    public int pathMaxEdge(int u, int v) {
+        if (u == v || !isConnected(u, v)) {
+            return NO_PATH;
+        }
+        if (depth[u] < depth[v]) {
+            int swap = u;
+            u = v;
+            v = swap;
+        }
+        int max = NO_PATH; // Ranks are non-negative, so NO_PATH loses every max
+        for (int k = levels - 1; k >= 0; k--) {
+            if (depth[u] - (1 << k) >= depth[v]) {
+                max = Math.max(max, heaviest[k * vertexCount + u]);
+                u = ancestor[k * vertexCount + u];
+            }
+        }
+        if (u != v) {
+            for (int k = levels - 1; k >= 0; k--) {
+                int offset = k * vertexCount;
+                if (ancestor[offset + u] != ancestor[offset + v]) {
+                    max = Math.max(max, Math.max(heaviest[offset + u], heaviest[offset + v]));
+                    u = ancestor[offset + u];
+                    v = ancestor[offset + v];
+                }
+            }
+            max = Math.max(max, Math.max(heaviest[u], heaviest[v]));
+        }
+        return rankToEdge[max];
+    }
+
+    /**
+     * Bottleneck edge between two nodes: the heaviest edge on the best
+     * minimax path, which is the heaviest edge on their MST path
+     * @return the edge, or null if the nodes are not connected or equal
+     * @throws IllegalArgumentException for unknown node names
+     */
+    public Edge bottleneckEdge(String from, String to) {
+        int edge = pathMaxEdge(requireIndex(from), requireIndex(to));
+        return edge == NO_PATH ? null : graph.getEdge(edge);
+    }
+
+    /**
+     * Answer many path-max queries at once, in parallel
+     * @return for each pair, the edge index as from pathMaxEdge
+     */
+    public int[] pathMaxEdges(int[] from, int[] to) {
+        if (from.length != to.length) {
+            throw new IllegalArgumentException("Query arrays differ in length: " + from.length + " and " + to.length);
+        }
+        int[] answers = new int[from.length];
+        IntStream.range(0, from.length).parallel().forEach(q -> answers[q] = pathMaxEdge(from[q], to[q]));
+        return answers;
+    }
+
+    private int requireIndex(String node) {
+        int index = graph.indexOf(node);
+        if (index == -1) {
+            throw new IllegalArgumentException("Unknown node: " + node);
+        }
+        return index;
+    }
+}
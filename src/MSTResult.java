@@ -1,29 +1,184 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Stores the result of MST algorithm execution
+ * Stores the result of MST algorithm execution.
+ * Integer weights are summed into a long total; DOUBLE graphs keep a double total.
  */
 public class MSTResult {
     private List<Edge> mstEdges;
-    private int totalCost;
+    private WeightType weightType;
+    private long totalCost;
+    private double totalWeight;
     private int operationsCount;
     private double executionTimeMs;
+    private Map<String, Long> metrics = new LinkedHashMap<>();
+    private int[] edgeIndices;
 
-    public MSTResult(List<Edge> mstEdges, int totalCost, int operationsCount, double executionTimeMs) {
+    /**
+     * Result built from Edge objects. The weight type is the widest among the
+     * edges, as it would be for their graph. For DOUBLE edges the total
+     * weight is the sum of their weights, since a long total cannot hold it.
+     */
+    public MSTResult(List<Edge> mstEdges, long totalCost, int operationsCount, double executionTimeMs) {
+        this(mstEdges, weightTypeOf(mstEdges), totalCost, totalWeightOf(mstEdges, totalCost),
+            operationsCount, executionTimeMs);
+    }
+
+    private MSTResult(List<Edge> mstEdges, WeightType weightType, long totalCost, double totalWeight,
+                      int operationsCount, double executionTimeMs) {
         this.mstEdges = mstEdges;
+        this.weightType = weightType;
         this.totalCost = totalCost;
+        this.totalWeight = totalWeight;
         this.operationsCount = operationsCount;
         this.executionTimeMs = executionTimeMs;
     }
 
+    private static WeightType weightTypeOf(List<Edge> edges) {
+        WeightType weightType = WeightType.INT;
+        for (Edge edge : edges) {
+            weightType = weightType.widen(edge.getWeightType());
+        }
+        return weightType;
+    }
+
+    private static double totalWeightOf(List<Edge> edges, long totalCost) {
+        if (weightTypeOf(edges) != WeightType.DOUBLE) {
+            return totalCost;
+        }
+        double total = 0;
+        for (Edge edge : edges) {
+            total += edge.getDoubleWeight();
+        }
+        return total;
+    }
+
+    /**
+     * Build the result for a spanning tree given as edge indices of the graph,
+     * summing the weights with a loop specialised for the graph's weight type
+     * @param operationsCount operations so far; one addition per edge is added
+     * @param startTime System.nanoTime() at the start of the algorithm
+     */
+    public static MSTResult forTree(Graph graph, int[] treeEdges, int edgeCount,
+                                    int operationsCount, long startTime) {
+        GraphStorage storage = graph.getStorage();
+        List<Edge> mstEdges = new ArrayList<>(edgeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            mstEdges.add(graph.getEdge(treeEdges[i]));
+        }
+
+        WeightType weightType = storage.getWeightType();
+        long totalCost = 0;
+        double totalWeight = 0;
+        if (weightType == WeightType.DOUBLE) {
+            for (int i = 0; i < edgeCount; i++) {
+                totalWeight += storage.getEdgeWeightDouble(treeEdges[i]);
+            }
+            totalCost = Math.round(totalWeight);
+        } else {
+            for (int i = 0; i < edgeCount; i++) {
+                totalCost = Math.addExact(totalCost, storage.getEdgeWeightLong(treeEdges[i]));
+            }
+            totalWeight = totalCost;
+        }
+        operationsCount += edgeCount; // Addition operations
+
+        double executionTimeMs = (System.nanoTime() - startTime) / 1_000_000.0;
+        MSTResult result = new MSTResult(mstEdges, weightType, totalCost, totalWeight, operationsCount, executionTimeMs);
+        result.edgeIndices = Arrays.copyOf(treeEdges, edgeCount);
+        return result;
+    }
+
     public List<Edge> getMstEdges() {
         return mstEdges;
     }
 
-    public int getTotalCost() {
+    /**
+     * Input positions of the tree edges in the graph they were computed for,
+     * or null if the result was not built from edge indices
+     */
+    public int[] getEdgeIndices() {
+        return edgeIndices;
+    }
+
+    /**
+     * Input positions of the tree edges in the given graph, taken from this
+     * result if they point at those edges there, and otherwise (for a result
+     * not built from edge indices, or built for another graph) found by
+     * matching endpoints and weight
+     * @return the indices, or null if a tree edge is not in the graph
+     */
+    public int[] getEdgeIndices(Graph graph) {
+        if (edgeIndices != null && indicesMatch(graph)) {
+            return edgeIndices;
+        }
+        Map<Edge, Deque<Integer>> byEdge = new HashMap<>();
+        List<Edge> edges = graph.getEdges();
+        for (int i = 0; i < edges.size(); i++) {
+            byEdge.computeIfAbsent(edges.get(i), edge -> new ArrayDeque<>()).add(i);
+        }
+        int[] tree = new int[mstEdges.size()];
+        for (int i = 0; i < tree.length; i++) {
+            Deque<Integer> matches = byEdge.get(mstEdges.get(i));
+            if (matches == null || matches.isEmpty()) {
+                return null;
+            }
+            tree[i] = matches.poll();
+        }
+        return tree;
+    }
+
+    /**
+     * True if the stored indices are distinct edges of the graph, each equal
+     * to the tree edge at the same position
+     */
+    private boolean indicesMatch(Graph graph) {
+        if (edgeIndices.length != mstEdges.size()) {
+            return false;
+        }
+        int edgeCount = graph.getEdgeCount();
+        BitSet used = new BitSet(edgeCount);
+        for (int i = 0; i < edgeIndices.length; i++) {
+            int index = edgeIndices[i];
+            if (index < 0 || index >= edgeCount || used.get(index) || !graph.getEdge(index).equals(mstEdges.get(i))) {
+                return false;
+            }
+            used.set(index);
+        }
+        return true;
+    }
+
+    /**
+     * Total weight of the tree (rounded for DOUBLE weights)
+     */
+    public long getTotalCost() {
         return totalCost;
     }
 
+    /**
+     * Total weight of the tree as a double, exact for DOUBLE weights
+     */
+    public double getTotalWeight() {
+        return totalWeight;
+    }
+
+    public WeightType getWeightType() {
+        return weightType;
+    }
+
+    public String formatTotalCost() {
+        return weightType == WeightType.DOUBLE ? Double.toString(totalWeight) : Long.toString(totalCost);
+    }
+
     public int getOperationsCount() {
         return operationsCount;
     }
@@ -32,6 +187,52 @@ public class MSTResult {
         return executionTimeMs;
     }
 
+    /**
+     * Record an engine-specific metric (e.g. peak heap size)
+     */
+    public void putMetric(String name, long value) {
+        metrics.put(name, value);
+    }
+
+    public Map<String, Long> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * 64-bit hash of the tree that does not depend on edge order or direction,
+     * so results can be compared across runs and engines without diffing edge lists
+     */
+    public long getFingerprint() {
+        long fingerprint = 0;
+        for (Edge edge : mstEdges) {
+            boolean ordered = edge.getFrom().compareTo(edge.getTo()) <= 0;
+            long hash = 0xcbf29ce484222325L; // FNV-1a
+            hash = fnv(hash, ordered ? edge.getFrom() : edge.getTo());
+            hash = fnv(hash, ordered ? edge.getTo() : edge.getFrom());
+            // Equal weights hash alike whatever their type, as in Edge.equals
+            hash = (hash ^ edge.weightKey()) * 0x100000001b3L;
+            fingerprint += mix(hash); // Addition keeps it order independent
+        }
+        return fingerprint;
+    }
+
+    public String getFingerprintHex() {
+        return String.format("%016x", getFingerprint());
+    }
+
+    private static long fnv(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return (hash ^ 0xff) * 0x100000001b3L; // Separator, so "ab"+"c" differs from "a"+"bc"
+    }
+
+    private static long mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -39,9 +240,13 @@ public class MSTResult {
         for (Edge edge : mstEdges) {
             sb.append("  ").append(edge).append("\n");
         }
-        sb.append(String.format("Total Cost: %d\n", totalCost));
+        sb.append(String.format("Total Cost: %s\n", formatTotalCost()));
+        sb.append(String.format("Fingerprint: %s\n", getFingerprintHex()));
         sb.append(String.format("Operations: %d\n", operationsCount));
         sb.append(String.format("Execution Time: %.2f ms\n", executionTimeMs));
+        if (!metrics.isEmpty()) {
+            sb.append("Metrics: ").append(metrics).append("\n");
+        }
         return sb.toString();
     }
 }
@@ -1,4 +1,6 @@
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
@@ -7,76 +9,371 @@ import java.util.*;
 public class MSTSolver {
     
     public static void main(String[] args) {
+        SolverConfig config;
         try {
-            // Read input graphs from JSON file
-            String inputFile = "input.json";
-            System.out.println("Reading graphs from " + inputFile + "...");
-            List<Graph> graphs = JSONHandler.readGraphsFromJSON(inputFile);
+            config = SolverConfig.fromArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(SolverConfig.usage());
+            return;
+        }
+        
+        try {
+            if (config.isPipelined()) {
+                runPipelined(config);
+            } else {
+                runSequential(config);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Parse all graphs, then solve them one by one, then write all results
+     */
+    private static void runSequential(SolverConfig config) throws IOException {
+        // Read input graphs from JSON file
+        String inputFile = config.getInputFile();
+        System.out.println("Reading graphs from " + inputFile + "...");
+        List<GraphResult> results = new ArrayList<>();
+        try (GraphCache cache = openCache(config)) {
+            List<Graph> graphs = JSONHandler.readGraphsFromJSON(inputFile, cache);
             System.out.println("Loaded " + graphs.size() + " graphs.\n");
             
             // Process each graph
-            List<GraphResult> results = new ArrayList<>();
-            
             for (Graph graph : graphs) {
-                System.out.println("=".repeat(60));
-                System.out.println("Processing " + graph);
-                System.out.println("=".repeat(60));
-                
-                if (!graph.isConnected()) {
-                    System.out.println("WARNING: Graph is not connected! MST cannot be found.\n");
-                    continue;
+                GraphResult result = solve(graph, config, cache);
+                report(graph, result);
+                if (result != null) {
+                    results.add(result);
                 }
-                
-                // Run Prim's algorithm
-                System.out.println("\nRunning Prim's Algorithm...");
-                MSTResult primResult = PrimAlgorithm.findMST(graph);
-                System.out.println(primResult);
-                
-                // Run Kruskal's algorithm
-                System.out.println("Running Kruskal's Algorithm...");
-                MSTResult kruskalResult = KruskalAlgorithm.findMST(graph);
-                System.out.println(kruskalResult);
-                
-                // Verify results
-                System.out.println("Verification:");
-                System.out.println("  Both algorithms produce same total cost: " + 
-                    (primResult.getTotalCost() == kruskalResult.getTotalCost() ? "✓ PASS" : "✗ FAIL"));
-                System.out.println("  Prim MST has V-1 edges: " + 
-                    (primResult.getMstEdges().size() == graph.getVertexCount() - 1 ? "✓ PASS" : "✗ FAIL"));
-                System.out.println("  Kruskal MST has V-1 edges: " + 
-                    (kruskalResult.getMstEdges().size() == graph.getVertexCount() - 1 ? "✓ PASS" : "✗ FAIL"));
-                
-                // Store result
-                results.add(new GraphResult(
-                    graph.getId(),
-                    graph.getVertexCount(),
-                    graph.getEdgeCount(),
-                    primResult,
-                    kruskalResult
-                ));
-                
-                System.out.println();
+            }
+        }
+        
+        // Write results to output file
+        String outputFile = config.getOutputFile();
+        System.out.println("Writing results to " + outputFile + "...");
+        JSONHandler.writeResultsToJSON(outputFile, results);
+        System.out.println("Results saved successfully!");
+        
+        // Print summary table
+        List<String> summaryRows = new ArrayList<>();
+        for (GraphResult result : results) {
+            summaryRows.add(formatSummaryRow(result));
+        }
+        printSummaryTable(summaryRows);
+    }
+    
+    /**
+     * Overlap parsing, solving and writing; results are written as soon as
+     * they are ready (in input order) and only summary rows are retained
+     */
+    private static void runPipelined(SolverConfig config) throws IOException {
+        System.out.println("Streaming graphs from " + config.getInputFile() + " to " + config.getOutputFile()
+            + " (queue depth " + config.getQueueDepth() + ", " + config.getWorkerCount() + " workers)...\n");
+        
+        List<String> summaryRows = new ArrayList<>();
+        BatchPipeline<GraphResult> pipeline =
+            new BatchPipeline<>(config.getQueueDepth(), config.getWorkerCount());
+        
+        int processed;
+        try (GraphCache cache = openCache(config);
+             JSONHandler.ResultsWriter writer = new JSONHandler.ResultsWriter(config.getOutputFile())) {
+            processed = pipeline.run(config.getInputFile(), cache, graph -> solve(graph, config, cache), (graph, result) -> {
+                report(graph, result);
+                if (result != null) {
+                    writer.write(result);
+                    summaryRows.add(formatSummaryRow(result));
+                }
+            });
+        }
+        
+        System.out.println("Processed " + processed + " graphs, results saved successfully!");
+        printSummaryTable(summaryRows);
+    }
+    
+    private static GraphCache openCache(SolverConfig config) throws IOException {
+        GraphStore store = config.getGraphStoreDir() == null
+            ? null : new GraphStore(Paths.get(config.getGraphStoreDir()));
+        return new GraphCache(GraphCache.DEFAULT_CAPACITY, store, config.getMemoryBudgetBytes());
+    }
+    
+    /**
+     * Solve a graph, updating its base graph's MST if it came from delta input
+     * and that MST is known, and otherwise from scratch. The result is kept in
+     * the cache for deltas further on.
+     */
+    static GraphResult solve(Graph graph, SolverConfig config, GraphCache cache) throws IOException {
+        try {
+            GraphResult result = null;
+            MemoryPlan plan = applyPlan(graph, config);
+            GraphDelta.Patch patch = cache.getPatch(graph);
+            MSTResult baseResult = patch == null ? null : cache.getResult(patch.getBase());
+            // The update runs in memory, so not under a plan that needs the external engine
+            if (baseResult != null && (plan == null || plan.getEngine() == null)) {
+                result = solveIncrementally(graph, patch, baseResult, config);
+            }
+            if (result == null) {
+                result = solveWithinPlan(graph, config, plan);
+            }
+            if (result != null && plan != null) {
+                result.setMemoryPlan(plan, MemoryPlan.getProcessPeakHeapBytes());
             }
             
-            // Write results to output file
-            String outputFile = "output_results.json";
-            System.out.println("Writing results to " + outputFile + "...");
-            JSONHandler.writeResultsToJSON(outputFile, results);
-            System.out.println("Results saved successfully!");
+            // Graphs opened from the store are up to date there already
+            GraphStore store = cache.getStore();
+            if (store != null && !GraphStore.isSnapshot(graph)) {
+                store.save(graph);
+            }
             
-            // Print summary table
-            printSummaryTable(results);
+            if (result != null && result.getPrimaryResult() != null) {
+                cache.putResult(graph, result.getPrimaryResult());
+            }
+            return result;
+        } finally {
+            cache.release(graph);
+        }
+    }
+    
+    /**
+     * Update the base MST; in compare mode the full engines still run so the
+     * update is checked against them. The update and those engines share one
+     * deadline, as the engines do in solveWithinPlan, and run on the graph in
+     * the representation its memory plan chose.
+     * @return results, or null if the base MST could not be reused
+     */
+    private static GraphResult solveIncrementally(Graph graph, GraphDelta.Patch patch, MSTResult baseResult,
+                                                  SolverConfig config) {
+        MSTControl control = config.newControl();
+        MSTResult updated;
+        try {
+            updated = IncrementalMST.update(patch, baseResult, control);
+        } catch (MSTCancelledException e) {
+            GraphResult result = new GraphResult(
+                graph.getId(),
+                graph.getVertexCount(),
+                graph.getEdgeCount(),
+                null
+            );
+            result.setStopped(null, e);
+            return result;
+        }
+        if (updated == null) {
+            return null;
+        }
+        
+        GraphResult result = new GraphResult(
+            graph.getId(),
+            graph.getVertexCount(),
+            graph.getEdgeCount(),
+            updated
+        );
+        if (config.isCompareEngines()) {
+            MSTEngine running = MSTEngine.PRIM;
+            try {
+                result.addResult(MSTEngine.PRIM, PrimAlgorithm.findMST(graph, control));
+                running = MSTEngine.KRUSKAL;
+                result.addResult(MSTEngine.KRUSKAL, KruskalAlgorithm.findMST(graph, control));
+            } catch (MSTCancelledException e) {
+                result.setStopped(running, e);
+            }
+        } else {
+            result.setVerification(MSTVerifier.check(graph, updated));
+            if (config.shouldVerify(graph)) {
+                MSTEngine verifier = config.engineFor(graph);
+                try {
+                    result.addResult(verifier, verifier.findMST(graph, control));
+                } catch (MSTCancelledException e) {
+                    result.setStopped(verifier, e);
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Solve a graph according to the configured run mode: either run every
+     * engine and compare them, or run the selected engine, check its result
+     * with the MSTVerifier and, for a sample of graphs, run a second engine
+     * to cross-check the exact tree
+     * @return engine results, or null if the graph is not connected
+     */
+    static GraphResult solve(Graph graph, SolverConfig config) {
+        MemoryPlan plan = applyPlan(graph, config);
+        GraphResult result = solveWithinPlan(graph, config, plan);
+        if (result != null && plan != null) {
+            result.setMemoryPlan(plan, MemoryPlan.getProcessPeakHeapBytes());
+        }
+        return result;
+    }
+    
+    /**
+     * Under a memory budget the graph may move to a smaller representation
+     * and an external-memory engine may replace the configured ones
+     * @return the plan, already applied to the graph, or null without a budget
+     */
+    private static MemoryPlan applyPlan(Graph graph, SolverConfig config) {
+        MemoryPlan plan = config.planFor(graph);
+        if (plan != null) {
+            // Measured from before the conversion, which is part of the plan's cost
+            MemoryPlan.resetPeakHeap();
+            plan.apply(graph);
+        }
+        return plan;
+    }
+    
+    private static GraphResult solveWithinPlan(Graph graph, SolverConfig config, MemoryPlan plan) {
+        if (!graph.isConnected()) {
+            return null;
+        }
+        
+        // One deadline for all engine runs on this graph
+        MSTControl control = config.newControl();
+        MSTEngine planned = plan != null ? plan.getEngine() : null;
+        
+        if (config.isCompareEngines() && planned == null) {
+            MSTResult primResult = null;
+            MSTResult kruskalResult = null;
+            MSTEngine running = MSTEngine.PRIM;
+            MSTCancelledException stopped = null;
+            try {
+                primResult = PrimAlgorithm.findMST(graph, control);
+                running = MSTEngine.KRUSKAL;
+                kruskalResult = KruskalAlgorithm.findMST(graph, control);
+            } catch (MSTCancelledException e) {
+                stopped = e;
+            }
             
-        } catch (IOException e) {
-            System.err.println("Error: " + e.getMessage());
-            e.printStackTrace();
+            GraphResult result = new GraphResult(
+                graph.getId(),
+                graph.getVertexCount(),
+                graph.getEdgeCount(),
+                primResult,
+                kruskalResult
+            );
+            if (stopped != null) {
+                result.setStopped(running, stopped);
+            }
+            return result;
         }
+        
+        MSTEngine engine = planned != null ? planned : config.engineFor(graph);
+        MSTResult selected;
+        try {
+            selected = engine.findMST(graph, control);
+        } catch (MSTCancelledException e) {
+            GraphResult result = new GraphResult(
+                graph.getId(),
+                graph.getVertexCount(),
+                graph.getEdgeCount(),
+                engine,
+                null
+            );
+            result.setStopped(engine, e);
+            return result;
+        } catch (UncheckedIOException e) {
+            // Run files of an external-memory engine; the other graphs still run
+            GraphResult result = new GraphResult(
+                graph.getId(),
+                graph.getVertexCount(),
+                graph.getEdgeCount(),
+                engine,
+                null
+            );
+            result.setFailure(e.getMessage());
+            return result;
+        }
+        GraphResult result = new GraphResult(
+            graph.getId(),
+            graph.getVertexCount(),
+            graph.getEdgeCount(),
+            engine,
+            selected
+        );
+        if (planned != null) {
+            return result; // The checks need O(E) heap, which the plan has ruled out
+        }
+        result.setVerification(MSTVerifier.check(graph, selected));
+        
+        if (config.shouldVerify(graph)) {
+            MSTEngine verifier = engine == MSTEngine.KRUSKAL ? MSTEngine.PRIM : MSTEngine.KRUSKAL;
+            try {
+                result.addResult(verifier, verifier.findMST(graph, control));
+            } catch (MSTCancelledException e) {
+                result.setStopped(verifier, e);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Print the results and verification checks for a single graph
+     */
+    private static void report(Graph graph, GraphResult result) {
+        System.out.println("=".repeat(60));
+        System.out.println("Processing " + graph);
+        System.out.println("=".repeat(60));
+        
+        if (result == null) {
+            System.out.println("WARNING: Graph is not connected! MST cannot be found.\n");
+            return;
+        }
+        
+        if (result.isIncremental()) {
+            System.out.println("Source: incremental update of the base graph's MST");
+        }
+        if (result.getSelectedEngine() != null) {
+            System.out.println("Selected engine: " + result.getSelectedEngine().getDisplayName());
+        }
+        if (result.getStopped() != null) {
+            System.out.println("WARNING: " + result.getStoppedDisplayName() + " stopped: "
+                + result.getStopped().getMessage());
+        }
+        if (result.getFailure() != null) {
+            System.out.println("ERROR: " + result.getSelectedEngine().getDisplayName() + " failed: "
+                + result.getFailure());
+        }
+        
+        if (result.isIncremental()) {
+            System.out.println("\nIncremental update:");
+            System.out.println(result.getIncrementalResult());
+        }
+        for (Map.Entry<MSTEngine, MSTResult> entry : result.getResults().entrySet()) {
+            System.out.println("\n" + entry.getKey().getDisplayName() + "'s Algorithm:");
+            System.out.println(entry.getValue());
+        }
+        
+        // Verify results
+        System.out.println("Verification:");
+        if (result.isVerifierRun()) {
+            System.out.println("  Spanning, acyclic and minimal (MSTVerifier): " +
+                (result.getVerificationProblem() == null ? "✓ PASS" : "✗ FAIL (" + result.getVerificationProblem() + ")"));
+        }
+        if (result.getResultCount() > 1) {
+            System.out.println("  All engines produce same tree (cost and fingerprint): " +
+                (result.isCrossChecked() ? "✓ PASS" : "✗ FAIL"));
+        } else {
+            System.out.println("  Cross-check with a second engine: skipped (not sampled)");
+        }
+        if (result.isIncremental()) {
+            System.out.println("  Incremental MST has V-1 edges: " +
+                (result.getIncrementalResult().getMstEdges().size() == graph.getVertexCount() - 1 ? "✓ PASS" : "✗ FAIL"));
+        }
+        for (Map.Entry<MSTEngine, MSTResult> entry : result.getResults().entrySet()) {
+            System.out.println("  " + entry.getKey().getDisplayName() + " MST has V-1 edges: " +
+                (entry.getValue().getMstEdges().size() == graph.getVertexCount() - 1 ? "✓ PASS" : "✗ FAIL"));
+        }
+        
+        System.out.println();
     }
     
     /**
      * Print a summary table comparing Prim's and Kruskal's algorithms
      */
-    private static void printSummaryTable(List<GraphResult> results) {
+    private static void printSummaryTable(List<String> rows) {
         System.out.println("\n" + "=".repeat(100));
         System.out.println("PERFORMANCE COMPARISON SUMMARY");
         System.out.println("=".repeat(100));
@@ -85,27 +382,49 @@ public class MSTSolver {
             "Prim (ops/time ms)", "Kruskal (ops/time ms)", "Winner");
         System.out.println("-".repeat(100));
         
-        for (GraphResult result : results) {
-            MSTResult prim = result.getPrimResult();
-            MSTResult kruskal = result.getKruskalResult();
-            
-            String winner = "";
-            if (prim.getExecutionTimeMs() < kruskal.getExecutionTimeMs()) {
-                winner = "Prim";
-            } else if (kruskal.getExecutionTimeMs() < prim.getExecutionTimeMs()) {
-                winner = "Kruskal";
-            } else {
-                winner = "Tie";
-            }
-            
-            System.out.printf("%-10d %-12s %-10d %-25s %-25s %-25s\n",
-                result.getGraphId(),
-                result.getVertices() + "/" + result.getEdges(),
-                prim.getTotalCost(),
-                prim.getOperationsCount() + " / " + String.format("%.2f", prim.getExecutionTimeMs()),
-                kruskal.getOperationsCount() + " / " + String.format("%.2f", kruskal.getExecutionTimeMs()),
-                winner);
+        for (String row : rows) {
+            System.out.println(row);
         }
         System.out.println("=".repeat(100));
     }
+    
+    private static String formatSummaryRow(GraphResult result) {
+        MSTResult prim = result.getPrimResult();
+        MSTResult kruskal = result.getKruskalResult();
+        
+        String winner = "";
+        if (prim == null || kruskal == null) {
+            winner = result.isIncremental() ? "Incremental"
+                : result.getSelectedEngine() != null ? result.getSelectedEngine().getDisplayName() + " (selected)" : "-";
+        } else if (prim.getExecutionTimeMs() < kruskal.getExecutionTimeMs()) {
+            winner = "Prim";
+        } else if (kruskal.getExecutionTimeMs() < prim.getExecutionTimeMs()) {
+            winner = "Kruskal";
+        } else {
+            winner = "Tie";
+        }
+        
+        if (result.getStopped() != null) {
+            winner = result.getStoppedDisplayName() + " (stopped)";
+        }
+        if (result.getFailure() != null) {
+            winner = result.getSelectedEngine().getDisplayName() + " (failed)";
+        }
+        
+        List<MSTResult> all = result.getAllResults();
+        return String.format("%-10d %-12s %-10s %-25s %-25s %-25s",
+            result.getGraphId(),
+            result.getVertices() + "/" + result.getEdges(),
+            all.isEmpty() ? "-" : all.get(0).formatTotalCost(),
+            formatStats(prim),
+            formatStats(kruskal),
+            winner);
+    }
+    
+    private static String formatStats(MSTResult result) {
+        if (result == null) {
+            return "-";
+        }
+        return result.getOperationsCount() + " / " + String.format("%.2f", result.getExecutionTimeMs());
+    }
 }
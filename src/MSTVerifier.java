@@ -0,0 +1,125 @@
+import java.util.*;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Checks an MSTResult against its graph without computing another MST.
+ * <p>
+ * The reported edges must be V-1 distinct edges of the graph without a cycle
+ * (which makes them spanning), their weights must add up to the reported
+ * total, and no non-tree edge may be lighter than the heaviest tree edge on
+ * the path between its endpoints (the cycle property). The path maxima for
+ * all non-tree edges are answered in one offline pass by ForestPathMax, so
+ * the whole check is O((V + E) log V) and much cheaper than a second engine.
+ * <p>
+ * Only weights are compared: any minimum spanning tree passes, not just the
+ * canonical one. Comparing fingerprints of two engines checks the tie-breaks.
+ */
+public final class MSTVerifier {
+
+    private MSTVerifier() {
+    }
+
+    /**
+     * @return true if the result is a minimum spanning tree of the graph
+     *         (or empty for a graph that has none)
+     */
+    public static boolean isValid(Graph graph, MSTResult result) {
+        return check(graph, result) == null;
+    }
+
+    /**
+     * @return description of the first problem found, or null if the result
+     *         is a minimum spanning tree of the graph
+     */
+    public static String check(Graph graph, MSTResult result) {
+        GraphStorage storage = graph.getStorage();
+        int vertexCount = storage.getVertexCount();
+        int edgeCount = storage.getEdgeCount();
+
+        if (vertexCount == 0 || !graph.isConnected()) {
+            return result.getMstEdges().isEmpty() ? null : "Graph has no spanning tree, but edges were reported";
+        }
+
+        int[] tree = result.getEdgeIndices(graph);
+        if (tree == null) {
+            return "Reported edges are not edges of the graph";
+        }
+        if (tree.length != vertexCount - 1) {
+            return "Expected " + (vertexCount - 1) + " edges, got " + tree.length;
+        }
+
+        // V-1 edges without a cycle span the graph
+        boolean[] inTree = new boolean[edgeCount];
+        UnionFind uf = new UnionFind(vertexCount);
+        int[] treeFrom = new int[tree.length];
+        int[] treeTo = new int[tree.length];
+        for (int i = 0; i < tree.length; i++) {
+            int edge = tree[i];
+            if (edge < 0 || edge >= edgeCount || inTree[edge]) {
+                return "Edge index " + edge + " is out of range or repeated";
+            }
+            inTree[edge] = true;
+            treeFrom[i] = storage.getEdgeFrom(edge);
+            treeTo[i] = storage.getEdgeTo(edge);
+            if (!uf.union(treeFrom[i], treeTo[i])) {
+                return "Tree edges form a cycle at " + describe(graph, edge);
+            }
+        }
+
+        String totalProblem = checkTotal(storage, tree, result);
+        if (totalProblem != null) {
+            return totalProblem;
+        }
+
+        // Cycle property for every non-tree edge (self-loops close no path)
+        int[] queryFrom = new int[edgeCount - tree.length];
+        int[] queryTo = new int[queryFrom.length];
+        int[] queryEdge = new int[queryFrom.length];
+        int queryCount = 0;
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int from = storage.getEdgeFrom(edge);
+            int to = storage.getEdgeTo(edge);
+            if (!inTree[edge] && from != to) {
+                queryFrom[queryCount] = from;
+                queryTo[queryCount] = to;
+                queryEdge[queryCount++] = edge;
+            }
+        }
+        IntBinaryOperator byWeight = storage.getWeightType() == WeightType.DOUBLE
+            ? (a, b) -> Double.compare(storage.getEdgeWeightDouble(a), storage.getEdgeWeightDouble(b))
+            : (a, b) -> Long.compare(storage.getEdgeWeightLong(a), storage.getEdgeWeightLong(b));
+        int[] pathMax = ForestPathMax.query(vertexCount, treeFrom, treeTo, tree, tree.length,
+            queryFrom, queryTo, queryCount, byWeight);
+        for (int q = 0; q < queryCount; q++) {
+            if (byWeight.applyAsInt(queryEdge[q], pathMax[q]) < 0) {
+                return "Non-tree edge " + describe(graph, queryEdge[q]) + " is lighter than tree edge "
+                    + describe(graph, pathMax[q]) + " on its path";
+            }
+        }
+        return null;
+    }
+
+    private static String checkTotal(GraphStorage storage, int[] tree, MSTResult result) {
+        if (storage.getWeightType() == WeightType.DOUBLE) {
+            double total = 0;
+            for (int edge : tree) {
+                total += storage.getEdgeWeightDouble(edge);
+            }
+            // Summation order may differ from the engine's
+            double tolerance = 1e-9 * Math.max(1, Math.abs(total));
+            return Math.abs(total - result.getTotalWeight()) <= tolerance ? null
+                : "Reported total " + result.getTotalWeight() + " does not match edge weights " + total;
+        }
+        long total = 0;
+        for (int edge : tree) {
+            total = Math.addExact(total, storage.getEdgeWeightLong(edge));
+        }
+        return total == result.getTotalCost() ? null
+            : "Reported total " + result.getTotalCost() + " does not match edge weights " + total;
+    }
+
+    private static String describe(Graph graph, int edge) {
+        Edge e = graph.getEdge(edge);
+        return e.getFrom() + "-" + e.getTo() + " (" + e.formatWeight() + ")";
+    }
+}
@@ -0,0 +1,209 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Chooses how a graph is held and solved so that the Java heap stays within a
+ * budget. The footprint is estimated from the vertex and edge counts alone,
+ * for each option from the most to the least heap hungry:
+ * <ol>
+ * <li>Edge objects plus the compact storage built from them, in-memory engines</li>
+ * <li>Compact heap storage only (Edge objects released), in-memory engines</li>
+ * <li>Off-heap storage, in-memory engines</li>
+ * <li>Off-heap storage, external-memory Kruskal</li>
+ * </ol>
+ * The first option that fits is taken; if none does, the last one is used
+ * anyway and the plan says so. A graph is never moved back to a bigger
+ * representation. Graphs in the input are planned before they are parsed,
+ * from the vertex and edge counts in their entry text, and are built directly
+ * in the chosen representation; for them the estimate also covers parsing
+ * (the entry text next to the graph being built). The estimates are rough
+ * (64-bit JVM, compressed references); off-heap memory, which is bounded by
+ * -XX:MaxDirectMemorySize, is not part of the budget.
+ */
+public class MemoryPlan {
+
+    public enum Representation {
+        OBJECTS("objects"),
+        COMPACT("compact"),
+        OFF_HEAP("off-heap");
+
+        private final String key;
+
+        Representation(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    // Heap bytes per vertex / edge
+    static final long NODE_BYTES = 112;          // Name String, list slot, index entry
+    static final long EDGE_OBJECT_BYTES = 40;    // Edge object and list slot
+    static final long STORAGE_VERTEX_BYTES = 4;  // CSR offset
+    static final long STORAGE_EDGE_BYTES = 32;   // Endpoints, weight, two CSR slots
+    static final long SOLVE_VERTEX_BYTES = 16;   // Tree, visited flags, Union-Find
+    static final long SOLVE_EDGE_BYTES = 32;     // Canonical order with its sort buffers, or Prim's heap
+    static final long EXTERNAL_VERTEX_BYTES = 24;
+    static final long EXTERNAL_FIXED_BYTES = ExternalKruskalAlgorithm.WORKING_BYTES; // Sort run or merge buffers
+    static final long TEXT_CHAR_BYTES = 4;       // Entry text, and its normalized copy when parsed into Edge objects
+
+    private final long budgetBytes;
+    private final Representation representation;
+    private final boolean external;
+    private final long estimatedBytes;
+    private final boolean fits;
+
+    private MemoryPlan(long budgetBytes, Representation representation, boolean external,
+                       long estimatedBytes, boolean fits) {
+        this.budgetBytes = budgetBytes;
+        this.representation = representation;
+        this.external = external;
+        this.estimatedBytes = estimatedBytes;
+        this.fits = fits;
+    }
+
+    /**
+     * Pick the first option, starting from the graph's current representation,
+     * whose estimated heap use is within the budget
+     */
+    public static MemoryPlan choose(Graph graph, long budgetBytes) {
+        Representation current = graph.hasEdgeObjects() ? Representation.OBJECTS
+            : graph.getStorage().isOffHeap() ? Representation.OFF_HEAP : Representation.COMPACT;
+        return choose(current, graph.getVertexCount(), graph.getEdgeCount(), 0, budgetBytes);
+    }
+
+    /**
+     * Plan a graph that is still to be parsed from an entry of the given
+     * length: the first option whose estimated heap use, while parsing and
+     * while solving, is within the budget
+     */
+    public static MemoryPlan choose(int vertices, int edges, long textChars, long budgetBytes) {
+        return choose(Representation.OBJECTS, vertices, edges, textChars, budgetBytes);
+    }
+
+    private static MemoryPlan choose(Representation current, int vertices, int edges, long textChars,
+                                     long budgetBytes) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + budgetBytes);
+        }
+        for (Representation representation : Representation.values()) {
+            if (representation.ordinal() < current.ordinal()) {
+                continue;
+            }
+            long estimate = Math.max(estimate(representation, false, vertices, edges),
+                estimateParsing(representation, vertices, edges, textChars));
+            if (estimate <= budgetBytes) {
+                return new MemoryPlan(budgetBytes, representation, false, estimate, true);
+            }
+        }
+        long estimate = Math.max(estimate(Representation.OFF_HEAP, true, vertices, edges),
+            estimateParsing(Representation.OFF_HEAP, vertices, edges, textChars));
+        return new MemoryPlan(budgetBytes, Representation.OFF_HEAP, true, estimate, estimate <= budgetBytes);
+    }
+
+    /**
+     * Estimated peak heap use of parsing a graph of this size into the given
+     * representation from an entry of textChars characters (0 for a graph
+     * that is already built)
+     */
+    public static long estimateParsing(Representation representation, int vertices, int edges, long textChars) {
+        if (textChars == 0) {
+            return 0;
+        }
+        long bytes = NODE_BYTES * vertices + TEXT_CHAR_BYTES * textChars;
+        if (representation == Representation.OBJECTS) {
+            bytes += EDGE_OBJECT_BYTES * edges;
+        } else if (representation == Representation.COMPACT) {
+            bytes += STORAGE_EDGE_BYTES * edges;
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimated peak heap use of solving a graph of this size
+     * @param external true for the external-memory Kruskal, false for in-memory engines
+     */
+    public static long estimate(Representation representation, boolean external, int vertices, int edges) {
+        long bytes = NODE_BYTES * vertices;
+        if (representation == Representation.OBJECTS) {
+            bytes += EDGE_OBJECT_BYTES * edges;
+        }
+        if (representation != Representation.OFF_HEAP) {
+            bytes += STORAGE_VERTEX_BYTES * vertices + STORAGE_EDGE_BYTES * edges;
+        }
+        if (external) {
+            bytes += EXTERNAL_VERTEX_BYTES * vertices + EXTERNAL_FIXED_BYTES;
+        } else {
+            bytes += SOLVE_VERTEX_BYTES * vertices + SOLVE_EDGE_BYTES * edges;
+        }
+        return bytes;
+    }
+
+    /**
+     * Convert the graph in place to the chosen representation
+     */
+    public void apply(Graph graph) {
+        if (representation == Representation.COMPACT && graph.hasEdgeObjects()) {
+            graph.releaseEdgeObjects();
+        } else if (representation == Representation.OFF_HEAP) {
+            graph.moveOffHeap();
+        }
+    }
+
+    /**
+     * Engine required by the plan, or null if the configured in-memory engines can run
+     */
+    public MSTEngine getEngine() {
+        return external ? MSTEngine.KRUSKAL_EXTERNAL : null;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public Representation getRepresentation() {
+        return representation;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * False if even the smallest option is estimated to exceed the budget
+     */
+    public boolean fits() {
+        return fits;
+    }
+
+    /**
+     * Start a new peak heap measurement. The heap pools belong to the whole
+     * JVM, so the measurement includes concurrent work on other graphs, and
+     * other workers resetting it for their own graphs.
+     */
+    public static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Peak heap use of the process since the last reset, summed over the heap
+     * pools. This includes garbage not collected yet, so it is an upper bound
+     * of the live data and depends on the heap size and collector.
+     */
+    public static long getProcessPeakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,367 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * GraphStorage kept outside the Java heap in direct ByteBuffers, so that very
+ * large graphs do not add to garbage collection work.
+ * Arrays are split into blocks of at most 1 GB because a single ByteBuffer is
+ * limited to 2 GB. The storage should be closed when no longer needed; reads
+ * after close() fail with IllegalStateException. Closing drops the buffers,
+ * but the direct memory is only freed once they are garbage collected.
+ * INT weights take 4 bytes per edge; LONG and DOUBLE weights (the latter as
+ * raw bits) take 8.
+ */
+public class OffHeapGraphStorage implements GraphStorage {
+    private final int vertexCount;
+    private final int edgeCount;
+    // Set to null by close(); read once per access, see open()
+    private IntBlocks edgeFrom;
+    private IntBlocks edgeTo;
+    private final WeightType weightType;
+    private IntBlocks intWeights;
+    private LongBlocks longWeights;
+    private IntBlocks adjacencyStart;
+    private IntBlocks adjacentVertex;
+    private IntBlocks adjacentEdge;
+    private volatile boolean closed;
+
+    private OffHeapGraphStorage(int vertexCount, int edgeCount, IntBlocks edgeFrom, IntBlocks edgeTo,
+                                WeightType weightType, IntBlocks intWeights, LongBlocks longWeights) {
+        this.vertexCount = vertexCount;
+        this.edgeCount = edgeCount;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+        this.weightType = weightType;
+        this.intWeights = intWeights;
+        this.longWeights = longWeights;
+
+        // Count degrees, then turn them into CSR offsets
+        adjacencyStart = new IntBlocks(vertexCount + 1);
+        for (int e = 0; e < edgeCount; e++) {
+            adjacencyStart.increment(edgeFrom.get(e) + 1);
+            adjacencyStart.increment(edgeTo.get(e) + 1);
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            adjacencyStart.set(v + 1, adjacencyStart.get(v + 1) + adjacencyStart.get(v));
+        }
+
+        // Fill both directions of every edge, in input order
+        adjacentVertex = new IntBlocks(2L * edgeCount);
+        adjacentEdge = new IntBlocks(2L * edgeCount);
+        IntBlocks next = new IntBlocks(vertexCount);
+        for (int v = 0; v < vertexCount; v++) {
+            next.set(v, adjacencyStart.get(v));
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            int from = edgeFrom.get(e);
+            int to = edgeTo.get(e);
+
+            int slot = next.get(from);
+            next.set(from, slot + 1);
+            adjacentVertex.set(slot, to);
+            adjacentEdge.set(slot, e);
+
+            slot = next.get(to);
+            next.set(to, slot + 1);
+            adjacentVertex.set(slot, from);
+            adjacentEdge.set(slot, e);
+        }
+    }
+
+    /**
+     * Copy any storage (typically a heap one) off-heap
+     */
+    public static OffHeapGraphStorage copyOf(GraphStorage source) {
+        WeightType weightType = source.getWeightType();
+        Builder builder = new Builder(source.getVertexCount(), source.getEdgeCount(), weightType);
+        for (int e = 0; e < source.getEdgeCount(); e++) {
+            if (weightType == WeightType.DOUBLE) {
+                builder.addEdge(source.getEdgeFrom(e), source.getEdgeTo(e), source.getEdgeWeightDouble(e));
+            } else {
+                builder.addEdge(source.getEdgeFrom(e), source.getEdgeTo(e), source.getEdgeWeightLong(e));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Collects edges directly into off-heap memory, so a graph never has to
+     * exist as Edge objects on the heap
+     */
+    public static class Builder {
+        private final int vertexCount;
+        private final WeightType weightType;
+        private final IntBlocks from;
+        private final IntBlocks to;
+        private final IntBlocks intWeights;
+        private final LongBlocks longWeights;
+        private int edgeCount;
+        private boolean built;
+
+        public Builder(int vertexCount, int edgeCapacity) {
+            this(vertexCount, edgeCapacity, WeightType.INT);
+        }
+
+        public Builder(int vertexCount, int edgeCapacity, WeightType weightType) {
+            this.vertexCount = vertexCount;
+            this.weightType = weightType;
+            this.from = new IntBlocks(edgeCapacity);
+            this.to = new IntBlocks(edgeCapacity);
+            this.intWeights = weightType == WeightType.INT ? new IntBlocks(edgeCapacity) : null;
+            this.longWeights = weightType == WeightType.INT ? null : new LongBlocks(edgeCapacity);
+        }
+
+        public Builder addEdge(int fromVertex, int toVertex, int edgeWeight) {
+            return addEdge(fromVertex, toVertex, (long) edgeWeight);
+        }
+
+        public Builder addEdge(int fromVertex, int toVertex, long edgeWeight) {
+            if (weightType == WeightType.DOUBLE) {
+                return addEdge(fromVertex, toVertex, (double) edgeWeight);
+            }
+            if (weightType == WeightType.INT && WeightType.of(edgeWeight) != WeightType.INT) {
+                throw new IllegalArgumentException("Weight does not fit in an INT graph: " + edgeWeight);
+            }
+            int edge = addEndpoints(fromVertex, toVertex);
+            if (intWeights != null) {
+                intWeights.set(edge, (int) edgeWeight);
+            } else {
+                longWeights.set(edge, edgeWeight);
+            }
+            return this;
+        }
+
+        public Builder addEdge(int fromVertex, int toVertex, double edgeWeight) {
+            if (weightType != WeightType.DOUBLE) {
+                throw new IllegalArgumentException("Fractional weight in a " + weightType + " graph: " + edgeWeight);
+            }
+            if (Double.isNaN(edgeWeight)) {
+                throw new IllegalArgumentException("Edge weight must be a number");
+            }
+            int edge = addEndpoints(fromVertex, toVertex);
+            longWeights.set(edge, Double.doubleToRawLongBits(edgeWeight));
+            return this;
+        }
+
+        private int addEndpoints(int fromVertex, int toVertex) {
+            if (built) {
+                throw new IllegalStateException("Storage already built");
+            }
+            if (edgeCount == from.length()) {
+                throw new IllegalStateException("Edge capacity exceeded: " + edgeCount);
+            }
+            if (fromVertex < 0 || fromVertex >= vertexCount || toVertex < 0 || toVertex >= vertexCount) {
+                throw new IllegalArgumentException("Edge endpoint out of range: " + fromVertex + "-" + toVertex);
+            }
+            from.set(edgeCount, fromVertex);
+            to.set(edgeCount, toVertex);
+            return edgeCount++;
+        }
+
+        public OffHeapGraphStorage build() {
+            built = true;
+            return new OffHeapGraphStorage(vertexCount, edgeCount, from, to, weightType, intWeights, longWeights);
+        }
+    }
+
+    /**
+     * Off-heap bytes held by this storage
+     */
+    public long getOffHeapBytes() {
+        long weightBytes = weightType == WeightType.INT
+            ? 4L * open(intWeights).length() : 8L * open(longWeights).length();
+        return weightBytes + 4L * (open(edgeFrom).length() + open(edgeTo).length()
+            + open(adjacencyStart).length() + open(adjacentVertex).length() + open(adjacentEdge).length());
+    }
+
+    @Override
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public int getEdgeFrom(int edge) {
+        return open(edgeFrom).get(edge);
+    }
+
+    @Override
+    public int getEdgeTo(int edge) {
+        return open(edgeTo).get(edge);
+    }
+
+    @Override
+    public WeightType getWeightType() {
+        return weightType;
+    }
+
+    @Override
+    public int getEdgeWeight(int edge) {
+        if (weightType != WeightType.INT) {
+            throw new IllegalStateException("Graph weights are " + weightType + ", not INT");
+        }
+        return open(intWeights).get(edge);
+    }
+
+    @Override
+    public long getEdgeWeightLong(int edge) {
+        if (weightType == WeightType.INT) {
+            return open(intWeights).get(edge);
+        }
+        if (weightType == WeightType.DOUBLE) {
+            throw new IllegalStateException("Graph weights are DOUBLE, not integers");
+        }
+        return open(longWeights).get(edge);
+    }
+
+    @Override
+    public double getEdgeWeightDouble(int edge) {
+        if (weightType == WeightType.DOUBLE) {
+            return Double.longBitsToDouble(open(longWeights).get(edge));
+        }
+        return getEdgeWeightLong(edge);
+    }
+
+    @Override
+    public int getAdjacencyStart(int vertex) {
+        return open(adjacencyStart).get(vertex);
+    }
+
+    @Override
+    public int getAdjacencyEnd(int vertex) {
+        return open(adjacencyStart).get(vertex + 1);
+    }
+
+    @Override
+    public int getAdjacentVertex(int slot) {
+        return open(adjacentVertex).get(slot);
+    }
+
+    @Override
+    public int getAdjacentEdge(int slot) {
+        return open(adjacentEdge).get(slot);
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Drop all buffers; no further reads are possible from this point. The
+     * JDK has no public call to free a direct buffer, so its memory is
+     * returned to the system when the garbage collector collects the buffer:
+     * close() makes it unreachable but does not bound when that happens.
+     * Safe to call while other threads read: each read takes the buffer
+     * once, so it either completes or fails with IllegalStateException.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        edgeFrom = edgeTo = intWeights = null;
+        longWeights = null;
+        adjacencyStart = adjacentVertex = adjacentEdge = null;
+    }
+
+    private static IntBlocks open(IntBlocks blocks) {
+        if (blocks == null) {
+            throw new IllegalStateException("Off-heap graph storage has been closed");
+        }
+        return blocks;
+    }
+
+    private static LongBlocks open(LongBlocks blocks) {
+        if (blocks == null) {
+            throw new IllegalStateException("Off-heap graph storage has been closed");
+        }
+        return blocks;
+    }
+
+    /**
+     * Fixed-size int array over one or more direct buffers
+     */
+    private static final class IntBlocks {
+        private static final int BLOCK_SHIFT = 28; // 2^28 ints = 1 GB per block
+        private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+        private final IntBuffer[] blocks;
+        private final int length;
+
+        IntBlocks(long length) {
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many elements for off-heap storage: " + length);
+            }
+            this.length = (int) length;
+            int blockCount = (int) ((length + BLOCK_MASK) >>> BLOCK_SHIFT);
+            blocks = new IntBuffer[blockCount];
+            for (int b = 0; b < blockCount; b++) {
+                long remaining = length - ((long) b << BLOCK_SHIFT);
+                int size = (int) Math.min(remaining, 1 << BLOCK_SHIFT);
+                blocks[b] = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+            }
+        }
+
+        int get(int index) {
+            return blocks[index >>> BLOCK_SHIFT].get(index & BLOCK_MASK);
+        }
+
+        void set(int index, int value) {
+            blocks[index >>> BLOCK_SHIFT].put(index & BLOCK_MASK, value);
+        }
+
+        void increment(int index) {
+            set(index, get(index) + 1);
+        }
+
+        int length() {
+            return length;
+        }
+    }
+
+    /**
+     * Fixed-size long array over one or more direct buffers
+     */
+    private static final class LongBlocks {
+        private static final int BLOCK_SHIFT = 27; // 2^27 longs = 1 GB per block
+        private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+        private final LongBuffer[] blocks;
+        private final int length;
+
+        LongBlocks(long length) {
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many elements for off-heap storage: " + length);
+            }
+            this.length = (int) length;
+            int blockCount = (int) ((length + BLOCK_MASK) >>> BLOCK_SHIFT);
+            blocks = new LongBuffer[blockCount];
+            for (int b = 0; b < blockCount; b++) {
+                long remaining = length - ((long) b << BLOCK_SHIFT);
+                int size = (int) Math.min(remaining, 1 << BLOCK_SHIFT);
+                blocks[b] = ByteBuffer.allocateDirect(size * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+            }
+        }
+
+        long get(int index) {
+            return blocks[index >>> BLOCK_SHIFT].get(index & BLOCK_MASK);
+        }
+
+        void set(int index, long value) {
+            blocks[index >>> BLOCK_SHIFT].put(index & BLOCK_MASK, value);
+        }
+
+        int length() {
+            return length;
+        }
+    }
+}
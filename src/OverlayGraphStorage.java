@@ -0,0 +1,302 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * GraphStorage of a graph patched by a GraphDelta, reading through to the
+ * storage of the base graph instead of copying it. Only the changes are kept:
+ * the removed base edges, the new weights of reweighted edges and the added
+ * edges. Surviving base edges keep their relative order and the added edges
+ * are numbered after them, so an edge index maps to its base index with one
+ * binary search over the removed edges.
+ * The CSR adjacency is built on first use, like ArrayGraphStorage's. The base
+ * graph is kept open until this storage is closed.
+ */
+public class OverlayGraphStorage implements GraphStorage {
+    private final Graph base;
+    private final GraphStorage baseStorage;
+    private final int vertexCount;
+    private final int[] removed;
+    private final int firstAddedEdge;
+    private final int[] reweighted;
+    private final long[] reweightedLong;
+    private final double[] reweightedDouble;
+    private final int[] addedFrom;
+    private final int[] addedTo;
+    private final long[] addedLong;
+    private final double[] addedDouble;
+    private final WeightType weightType;
+    private volatile Adjacency adjacency;
+    private boolean closed;
+
+    private static final class Adjacency {
+        final int[] start;
+        final int[] vertex;
+        final int[] edge;
+
+        Adjacency(int[] start, int[] vertex, int[] edge) {
+            this.start = start;
+            this.vertex = vertex;
+            this.edge = edge;
+        }
+    }
+
+    /**
+     * @param base graph the delta applies to
+     * @param vertexCount base vertices plus added vertices
+     * @param removed base indices of the removed edges, ascending
+     * @param reweighted base indices of the reweighted edges, ascending and
+     *                   not removed
+     * @param newWeights new weight of each reweighted edge (endpoints unused)
+     * @param addedFrom endpoints of the added edges
+     * @param addedTo endpoints of the added edges
+     * @param added weight of each added edge (endpoints unused)
+     */
+    OverlayGraphStorage(Graph base, int vertexCount, int[] removed, int[] reweighted, List<Edge> newWeights,
+                        int[] addedFrom, int[] addedTo, List<Edge> added) {
+        if (vertexCount < base.getVertexCount()) {
+            throw new IllegalArgumentException("Overlay cannot drop vertices of the base graph");
+        }
+        this.base = base;
+        this.baseStorage = base.getStorage();
+        this.vertexCount = vertexCount;
+        this.removed = removed;
+        this.firstAddedEdge = baseStorage.getEdgeCount() - removed.length;
+        this.addedFrom = addedFrom;
+        this.addedTo = addedTo;
+        for (int e = 0; e < addedFrom.length; e++) {
+            checkVertex(addedFrom[e]);
+            checkVertex(addedTo[e]);
+        }
+
+        WeightType widest = baseStorage.getWeightType();
+        this.reweighted = new int[reweighted.length];
+        this.reweightedLong = new long[reweighted.length];
+        this.reweightedDouble = new double[reweighted.length];
+        for (int i = 0; i < reweighted.length; i++) {
+            this.reweighted[i] = getNewIndex(reweighted[i]);
+            widest = widest.widen(unpack(newWeights.get(i), reweightedLong, reweightedDouble, i));
+        }
+        this.addedLong = new long[added.size()];
+        this.addedDouble = new double[added.size()];
+        for (int i = 0; i < added.size(); i++) {
+            widest = widest.widen(unpack(added.get(i), addedLong, addedDouble, i));
+        }
+        this.weightType = widest;
+        base.retain();
+    }
+
+    private static WeightType unpack(Edge edge, long[] longWeights, double[] doubleWeights, int i) {
+        if (edge.getWeightType() == WeightType.DOUBLE) {
+            doubleWeights[i] = edge.getDoubleWeight();
+        } else {
+            longWeights[i] = edge.getLongWeight();
+            doubleWeights[i] = longWeights[i];
+        }
+        return edge.getWeightType();
+    }
+
+    private void checkVertex(int vertex) {
+        if (vertex < 0 || vertex >= vertexCount) {
+            throw new IllegalArgumentException("Edge endpoint out of range: " + vertex);
+        }
+    }
+
+    /**
+     * Index of a base edge in this storage, or -1 if it was removed
+     */
+    public int getNewIndex(int baseEdge) {
+        if (removed.length == 0) {
+            return baseEdge;
+        }
+        int position = Arrays.binarySearch(removed, baseEdge);
+        return position >= 0 ? -1 : baseEdge + position + 1;
+    }
+
+    /**
+     * Index in the base storage of a surviving base edge (edge < getFirstAddedEdge())
+     */
+    public int getBaseIndex(int edge) {
+        // removed[i] - i counts the surviving edges before removed[i], and never decreases
+        int low = 0;
+        int high = removed.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (removed[middle] - middle <= edge) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return edge + low;
+    }
+
+    /**
+     * Edges from this index on were added by the delta
+     */
+    public int getFirstAddedEdge() {
+        return firstAddedEdge;
+    }
+
+    /**
+     * Indices of the edges whose weight was set by the delta, ascending
+     */
+    public int[] getReweightedEdges() {
+        return reweighted.clone();
+    }
+
+    /**
+     * Position of the edge among the reweighted edges, or negative
+     */
+    private int reweightedSlot(int edge) {
+        return reweighted.length == 0 ? -1 : Arrays.binarySearch(reweighted, edge);
+    }
+
+    @Override
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return firstAddedEdge + addedFrom.length;
+    }
+
+    @Override
+    public int getEdgeFrom(int edge) {
+        if (edge >= firstAddedEdge) {
+            return addedFrom[edge - firstAddedEdge];
+        }
+        return baseStorage.getEdgeFrom(getBaseIndex(edge));
+    }
+
+    @Override
+    public int getEdgeTo(int edge) {
+        if (edge >= firstAddedEdge) {
+            return addedTo[edge - firstAddedEdge];
+        }
+        return baseStorage.getEdgeTo(getBaseIndex(edge));
+    }
+
+    @Override
+    public WeightType getWeightType() {
+        return weightType;
+    }
+
+    @Override
+    public int getEdgeWeight(int edge) {
+        if (weightType != WeightType.INT) {
+            throw new IllegalStateException("Graph weights are " + weightType + ", not INT");
+        }
+        return (int) getEdgeWeightLong(edge);
+    }
+
+    @Override
+    public long getEdgeWeightLong(int edge) {
+        if (weightType == WeightType.DOUBLE) {
+            throw new IllegalStateException("Graph weights are DOUBLE, not integers");
+        }
+        if (edge >= firstAddedEdge) {
+            return addedLong[edge - firstAddedEdge];
+        }
+        int slot = reweightedSlot(edge);
+        return slot >= 0 ? reweightedLong[slot] : baseStorage.getEdgeWeightLong(getBaseIndex(edge));
+    }
+
+    @Override
+    public double getEdgeWeightDouble(int edge) {
+        if (edge >= firstAddedEdge) {
+            return addedDouble[edge - firstAddedEdge];
+        }
+        int slot = reweightedSlot(edge);
+        return slot >= 0 ? reweightedDouble[slot] : baseStorage.getEdgeWeightDouble(getBaseIndex(edge));
+    }
+
+    private Adjacency adjacency() {
+        Adjacency built = adjacency;
+        if (built == null) {
+            synchronized (this) {
+                built = adjacency;
+                if (built == null) {
+                    built = buildAdjacency();
+                    adjacency = built;
+                }
+            }
+        }
+        return built;
+    }
+
+    private Adjacency buildAdjacency() {
+        int edgeCount = getEdgeCount();
+        int[] from = new int[edgeCount];
+        int[] to = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            from[e] = getEdgeFrom(e);
+            to[e] = getEdgeTo(e);
+        }
+
+        // Count degrees, then turn them into CSR offsets
+        int[] adjacencyStart = new int[vertexCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            adjacencyStart[from[e] + 1]++;
+            adjacencyStart[to[e] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            adjacencyStart[v + 1] += adjacencyStart[v];
+        }
+
+        // Fill both directions of every edge, in edge order
+        int[] adjacentVertex = new int[2 * edgeCount];
+        int[] adjacentEdge = new int[2 * edgeCount];
+        int[] next = new int[vertexCount];
+        System.arraycopy(adjacencyStart, 0, next, 0, vertexCount);
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = next[from[e]]++;
+            adjacentVertex[slot] = to[e];
+            adjacentEdge[slot] = e;
+
+            slot = next[to[e]]++;
+            adjacentVertex[slot] = from[e];
+            adjacentEdge[slot] = e;
+        }
+        return new Adjacency(adjacencyStart, adjacentVertex, adjacentEdge);
+    }
+
+    @Override
+    public boolean isAdjacencyBuilt() {
+        return adjacency != null;
+    }
+
+    @Override
+    public int getAdjacencyStart(int vertex) {
+        return adjacency().start[vertex];
+    }
+
+    @Override
+    public int getAdjacencyEnd(int vertex) {
+        return adjacency().start[vertex + 1];
+    }
+
+    @Override
+    public int getAdjacentVertex(int slot) {
+        return adjacency().vertex[slot];
+    }
+
+    @Override
+    public int getAdjacentEdge(int slot) {
+        return adjacency().edge[slot];
+    }
+
+    /**
+     * Release this storage's hold on the base graph
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        base.close();
+    }
+}
@@ -0,0 +1,237 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Multi-source parallel variant of Prim's algorithm.
+ * Every worker grows Prim trees from seeds in its own block of vertex ids.
+ * Vertices are claimed with CAS, so each belongs to exactly one tree. When the
+ * lightest edge leaving a tree reaches a vertex claimed by another tree, that
+ * edge is still the lightest edge leaving the tree (cut property), so it is
+ * kept, the two trees are merged in a ConcurrentUnionFind and the worker moves
+ * on to its next unclaimed seed. A final Kruskal-style pass over the canonical
+ * edge order connects the remaining trees.
+ * Since all engines break ties by EdgeOrder, the tree is identical to the one
+ * found by PrimAlgorithm and KruskalAlgorithm.
+ * Under an MSTControl the workers only poll it for cancellation and the
+ * deadline; checkpoints (and the progress listener) run on the calling thread.
+ */
+public class ParallelPrimAlgorithm {
+
+    private static final int UNCLAIMED = -1;
+
+    /**
+     * Find MST using one worker per available core
+     * @param graph Input graph
+     * @return MSTResult containing MST edges and statistics
+     */
+    public static MSTResult findMST(Graph graph) {
+        return findMST(graph, ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Find MST growing trees on the given number of workers
+     * @param graph Input graph
+     * @param workers Number of seed blocks grown in parallel
+     * @return MSTResult containing MST edges, statistics and tree metrics
+     */
+    public static MSTResult findMST(Graph graph, int workers) {
+        return findMST(graph, workers, null);
+    }
+
+    /**
+     * Find MST on one worker per available core, checking the control for
+     * deadline and cancellation
+     * @param control deadline, cancellation and progress, or null
+     * @throws MSTCancelledException if the control stopped the run
+     */
+    public static MSTResult findMST(Graph graph, MSTControl control) {
+        return findMST(graph, ForkJoinPool.getCommonPoolParallelism(), control);
+    }
+
+    /**
+     * Find MST growing trees on the given number of workers, checking the
+     * control while the trees grow and while they are joined
+     * @param control deadline, cancellation and progress, or null
+     * @throws MSTCancelledException if the control stopped the run
+     */
+    public static MSTResult findMST(Graph graph, int workers, MSTControl control) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be positive: " + workers);
+        }
+        long startTime = System.nanoTime();
+
+        GraphStorage storage = graph.getStorage();
+        int vertexCount = storage.getVertexCount();
+
+        if (vertexCount == 0 || !graph.isConnected()) {
+            return new MSTResult(new ArrayList<>(), 0, 0, 0);
+        }
+
+        if (control != null) {
+            control.checkpoint(0, vertexCount);
+        }
+        EdgeOrder order = graph.getEdgeOrder();
+        if (control != null) {
+            control.checkpoint(0, vertexCount);
+        }
+        int blocks = Math.min(workers, vertexCount);
+        AtomicIntegerArray owner = new AtomicIntegerArray(vertexCount);
+        for (int v = 0; v < vertexCount; v++) {
+            owner.set(v, UNCLAIMED);
+        }
+        ConcurrentUnionFind components = new ConcurrentUnionFind(vertexCount);
+        Worker[] grown = new Worker[blocks];
+
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            Worker worker = new Worker(storage, order, owner, components, control);
+            int first = (int) ((long) vertexCount * block / blocks);
+            int last = (int) ((long) vertexCount * (block + 1) / blocks);
+            for (int seed = first; seed < last && !worker.stopped; seed++) {
+                if (owner.get(seed) == UNCLAIMED && owner.compareAndSet(seed, UNCLAIMED, seed)) {
+                    worker.grow(seed);
+                }
+            }
+            grown[block] = worker;
+        });
+
+        // Collect the edges of all trees (each merge edge is kept by exactly one worker)
+        int[] treeRanks = new int[vertexCount - 1];
+        int treeSize = 0;
+        int operationsCount = 0;
+        long trees = 0;
+        long edgesScanned = 0;
+        for (Worker worker : grown) {
+            System.arraycopy(worker.treeRanks, 0, treeRanks, treeSize, worker.treeSize);
+            treeSize += worker.treeSize;
+            operationsCount += worker.operationsCount;
+            trees += worker.trees;
+            edgesScanned += worker.edgesScanned;
+        }
+        long parallelEdges = treeSize;
+        // Throws here if a worker stopped early (a finished tree is kept)
+        if (control != null && treeSize < vertexCount - 1) {
+            control.checkpoint(edgesScanned, vertexCount - treeSize);
+        }
+
+        // Trees that never met are joined by the lightest edges between them
+        int countdown = MSTControl.CHECK_INTERVAL;
+        for (int position = 0; position < order.size() && treeSize < vertexCount - 1; position++) {
+            if (control != null && --countdown == 0) {
+                countdown = MSTControl.CHECK_INTERVAL;
+                control.checkpoint(edgesScanned + position, vertexCount - treeSize);
+            }
+            operationsCount++; // Iteration
+            int edge = order.getEdge(position);
+            if (components.union(storage.getEdgeFrom(edge), storage.getEdgeTo(edge))) {
+                treeRanks[treeSize++] = position;
+                operationsCount++; // Array add
+            }
+        }
+
+        // Report tree edges in canonical order, like Kruskal
+        Arrays.sort(treeRanks, 0, treeSize);
+        int[] mstEdges = new int[treeSize];
+        for (int i = 0; i < treeSize; i++) {
+            mstEdges[i] = order.getEdge(treeRanks[i]);
+        }
+
+        MSTResult result = MSTResult.forTree(graph, mstEdges, treeSize, operationsCount, startTime);
+        result.putMetric("workers", blocks);
+        result.putMetric("trees_grown", trees);
+        result.putMetric("parallel_edges", parallelEdges);
+        return result;
+    }
+
+    /**
+     * Per-thread Prim state; the heap is reused for every tree the worker grows
+     */
+    private static final class Worker {
+        private final GraphStorage storage;
+        private final EdgeOrder order;
+        private final AtomicIntegerArray owner;
+        private final ConcurrentUnionFind components;
+        private final MSTControl control;
+        private final LongMinHeap minHeap = new LongMinHeap();
+        private int[] treeRanks = new int[16];
+        private int treeSize;
+        private int operationsCount;
+        private long trees;
+        private long edgesScanned;
+        private int countdown = MSTControl.CHECK_INTERVAL;
+        // The control was cancelled or expired; the caller's checkpoint throws
+        boolean stopped;
+
+        Worker(GraphStorage storage, EdgeOrder order, AtomicIntegerArray owner, ConcurrentUnionFind components,
+               MSTControl control) {
+            this.storage = storage;
+            this.order = order;
+            this.owner = owner;
+            this.components = components;
+            this.control = control;
+        }
+
+        /**
+         * Grow a Prim tree from a seed this worker has just claimed, until it
+         * runs into another tree, has no edges left or the control stops it
+         */
+        void grow(int seed) {
+            trees++;
+            minHeap.clear();
+            int current = seed;
+            while (true) {
+                // Add all edges from the newly claimed vertex
+                for (int slot = storage.getAdjacencyStart(current); slot < storage.getAdjacencyEnd(current); slot++) {
+                    if (control != null && --countdown == 0) {
+                        countdown = MSTControl.CHECK_INTERVAL;
+                        if (control.isCancelled() || control.isExpired()) {
+                            stopped = true;
+                            return;
+                        }
+                    }
+                    edgesScanned++;
+                    operationsCount++; // Array lookup
+                    if (owner.get(storage.getAdjacentVertex(slot)) != seed) {
+                        minHeap.push(((long) order.getRank(storage.getAdjacentEdge(slot)) << 32) | slot);
+                        operationsCount++; // Heap insertion
+                    }
+                }
+
+                // Pop until an edge leading out of this tree is found
+                int target;
+                long key;
+                do {
+                    if (minHeap.isEmpty()) {
+                        return; // The tree spans its whole connected component
+                    }
+                    key = minHeap.pop();
+                    target = storage.getAdjacentVertex((int) key);
+                    operationsCount += 2; // Heap extraction + array lookup
+                } while (owner.get(target) == seed);
+
+                int rank = (int) (key >>> 32);
+                int edge = order.getEdge(rank);
+                boolean claimed = owner.get(target) == UNCLAIMED
+                    && owner.compareAndSet(target, UNCLAIMED, seed);
+                // Either way this is the lightest edge leaving the tree; union()
+                // fails only if the other tree already took the same edge
+                if (components.union(storage.getEdgeFrom(edge), storage.getEdgeTo(edge))) {
+                    addTreeEdge(rank);
+                }
+                if (!claimed) {
+                    return; // Met another tree, the final pass joins what is still apart
+                }
+                current = target;
+            }
+        }
+
+        private void addTreeEdge(int rank) {
+            if (treeSize == treeRanks.length) {
+                treeRanks = Arrays.copyOf(treeRanks, treeSize * 2);
+            }
+            treeRanks[treeSize++] = rank;
+            operationsCount++; // Array add
+        }
+    }
+}
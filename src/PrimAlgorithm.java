@@ -4,77 +4,206 @@ import java.util.*;
  * Implementation of Prim's algorithm for finding Minimum Spanning Tree
  */
 public class PrimAlgorithm {
-    
+
+    /**
+     * Stale fraction of the heap above which the bounded mode compacts it
+     */
+    public static final double DEFAULT_STALE_THRESHOLD = 0.5;
+
+    /**
+     * Heaps smaller than this are never compacted, it would not pay off
+     */
+    private static final int MIN_COMPACTION_SIZE = 64;
+
     /**
      * Find MST using Prim's algorithm
      * @param graph Input graph
      * @return MSTResult containing MST edges and statistics
      */
     public static MSTResult findMST(Graph graph) {
+        return findMST(graph, null);
+    }
+
+    /**
+     * Find MST using Prim's algorithm, checking the control for deadline and
+     * cancellation while the tree grows
+     * @param control deadline, cancellation and progress, or null
+     * @throws MSTCancelledException if the control stopped the run
+     */
+    public static MSTResult findMST(Graph graph, MSTControl control) {
+        return findMST(graph, false, 1.0, control);
+    }
+
+    /**
+     * Find MST using Prim's algorithm with a bounded heap.
+     * An edge is only pushed if it is the lightest seen so far towards its
+     * target vertex, which makes older entries for that vertex stale; once more
+     * than staleThreshold of the heap is stale it is compacted in place. The heap
+     * then never holds more than about V / (1 - staleThreshold) entries, however
+     * dense the graph is.
+     * @param graph Input graph
+     * @param staleThreshold Stale fraction (0..1) that triggers compaction
+     * @return MSTResult containing MST edges, statistics and heap metrics
+     */
+    public static MSTResult findMSTBounded(Graph graph, double staleThreshold) {
+        return findMSTBounded(graph, staleThreshold, null);
+    }
+
+    public static MSTResult findMSTBounded(Graph graph) {
+        return findMSTBounded(graph, DEFAULT_STALE_THRESHOLD, null);
+    }
+
+    /**
+     * Bounded-heap Prim that checks the control for deadline and cancellation
+     * @param control deadline, cancellation and progress, or null
+     * @throws MSTCancelledException if the control stopped the run
+     */
+    public static MSTResult findMSTBounded(Graph graph, double staleThreshold, MSTControl control) {
+        if (!(staleThreshold > 0 && staleThreshold < 1)) {
+            throw new IllegalArgumentException("Stale threshold must be between 0 and 1: " + staleThreshold);
+        }
+        return findMST(graph, true, staleThreshold, control);
+    }
+
+    private static MSTResult findMST(Graph graph, boolean bounded, double staleThreshold, MSTControl control) {
         long startTime = System.nanoTime();
         int operationsCount = 0;
-        
-        List<String> nodes = graph.getNodes();
-        Map<String, List<Edge>> adjacencyList = graph.getAdjacencyList();
-        
-        if (nodes.isEmpty() || !graph.isConnected()) {
+
+        GraphStorage storage = graph.getStorage();
+        int vertexCount = storage.getVertexCount();
+
+        if (vertexCount == 0 || !graph.isConnected()) {
             return new MSTResult(new ArrayList<>(), 0, 0, 0);
         }
-        
-        List<Edge> mstEdges = new ArrayList<>();
-        Set<String> inMST = new HashSet<>();
-        PriorityQueue<Edge> minHeap = new PriorityQueue<>();
-        
+
+        if (control != null) {
+            control.checkpoint(0, vertexCount);
+        }
+        EdgeOrder order = graph.getEdgeOrder();
+        if (control != null) {
+            control.checkpoint(0, vertexCount);
+        }
+        int[] treeRanks = new int[vertexCount - 1];
+        int treeSize = 0;
+        boolean[] inMST = new boolean[vertexCount];
+        // Heap keys pack (canonical edge rank, adjacency slot) into a single long;
+        // the rank orders by weight and breaks ties the same way as Kruskal
+        LongMinHeap minHeap = new LongMinHeap();
+
+        // Bounded mode: lightest rank pushed so far towards each vertex
+        int[] bestRank = null;
+        if (bounded) {
+            bestRank = new int[vertexCount];
+            Arrays.fill(bestRank, Integer.MAX_VALUE);
+        }
+        int staleEntries = 0;
+        long stalePops = 0;
+        long compactions = 0;
+        int peakHeapSize = 0;
+        long edgesScanned = 0;
+        int countdown = MSTControl.CHECK_INTERVAL;
+
         // Start from the first node
-        String startNode = nodes.get(0);
-        inMST.add(startNode);
+        int current = 0;
+        inMST[current] = true;
         operationsCount++; // Add operation
-        
-        // Add all edges from start node to the heap
-        for (Edge edge : adjacencyList.get(startNode)) {
-            minHeap.offer(edge);
-            operationsCount++; // Heap insertion
-        }
-        
+
         // Process until we have V-1 edges in MST
-        while (!minHeap.isEmpty() && mstEdges.size() < nodes.size() - 1) {
-            Edge minEdge = minHeap.poll();
-            operationsCount++; // Heap extraction
-            
-            String from = minEdge.getFrom();
-            String to = minEdge.getTo();
-            
-            // Check if this edge creates a cycle
-            operationsCount++; // Set lookup
-            if (inMST.contains(to)) {
-                continue; // Skip this edge
-            }
-            
-            // Add edge to MST
-            mstEdges.add(minEdge);
-            inMST.add(to);
-            operationsCount += 2; // List add + Set add
-            
+        while (true) {
             // Add all edges from the newly added vertex
-            for (Edge edge : adjacencyList.get(to)) {
-                operationsCount++; // Set lookup
-                if (!inMST.contains(edge.getTo())) {
-                    minHeap.offer(edge);
-                    operationsCount++; // Heap insertion
+            for (int slot = storage.getAdjacencyStart(current); slot < storage.getAdjacencyEnd(current); slot++) {
+                int target = storage.getAdjacentVertex(slot);
+                operationsCount++; // Array lookup
+                edgesScanned++;
+                if (control != null && --countdown == 0) {
+                    countdown = MSTControl.CHECK_INTERVAL;
+                    control.checkpoint(edgesScanned, vertexCount - treeSize);
+                }
+                if (inMST[target]) {
+                    continue;
+                }
+
+                long key = heapKey(storage, order, slot);
+                if (bounded) {
+                    int rank = (int) (key >>> 32);
+                    if (rank >= bestRank[target]) {
+                        continue; // A lighter edge to this vertex is already queued
+                    }
+                    if (bestRank[target] != Integer.MAX_VALUE) {
+                        staleEntries++; // The previous entry for target is superseded
+                    }
+                    bestRank[target] = rank;
                 }
+                minHeap.push(key);
+                operationsCount++; // Heap insertion
+            }
+            peakHeapSize = Math.max(peakHeapSize, minHeap.size());
+
+            if (bounded && minHeap.size() >= MIN_COMPACTION_SIZE
+                    && staleEntries > staleThreshold * minHeap.size()) {
+                final int[] best = bestRank;
+                operationsCount += minHeap.size(); // One pass over the heap
+                minHeap.removeIf(key -> isStale(storage, inMST, best, key));
+                staleEntries = 0;
+                compactions++;
+            }
+
+            if (treeSize == vertexCount - 1) {
+                break;
             }
+
+            // Pop until an edge leading out of the tree is found
+            long key;
+            do {
+                key = minHeap.pop();
+                operationsCount += 2; // Heap extraction + array lookup
+                if (isStale(storage, inMST, bestRank, key)) {
+                    stalePops++;
+                    if (control != null && --countdown == 0) {
+                        countdown = MSTControl.CHECK_INTERVAL;
+                        control.checkpoint(edgesScanned, vertexCount - treeSize);
+                    }
+                    if (bounded) {
+                        staleEntries--;
+                    }
+                    key = -1;
+                }
+            } while (key == -1);
+
+            // Add edge to MST
+            current = storage.getAdjacentVertex((int) key);
+            treeRanks[treeSize++] = (int) (key >>> 32);
+            inMST[current] = true;
+            operationsCount += 2; // Array add + array update
+        }
+
+        // Report tree edges in canonical order, like Kruskal
+        Arrays.sort(treeRanks, 0, treeSize);
+        int[] mstEdges = new int[treeSize];
+        for (int i = 0; i < treeSize; i++) {
+            mstEdges[i] = order.getEdge(treeRanks[i]);
         }
-        
-        // Calculate total cost
-        int totalCost = 0;
-        for (Edge edge : mstEdges) {
-            totalCost += edge.getWeight();
-            operationsCount++; // Addition operation
+
+        // Calculate total cost (long/double accumulation per weight type)
+        MSTResult result = MSTResult.forTree(graph, mstEdges, treeSize, operationsCount, startTime);
+        result.putMetric("peak_heap_size", peakHeapSize);
+        result.putMetric("stale_pops", stalePops);
+        if (bounded) {
+            result.putMetric("heap_compactions", compactions);
         }
-        
-        long endTime = System.nanoTime();
-        double executionTimeMs = (endTime - startTime) / 1_000_000.0;
-        
-        return new MSTResult(mstEdges, totalCost, operationsCount, executionTimeMs);
+        return result;
+    }
+
+    /**
+     * An entry is stale if its target already joined the tree or, in bounded
+     * mode, a lighter entry towards the same target has been pushed since
+     */
+    private static boolean isStale(GraphStorage storage, boolean[] inMST, int[] bestRank, long key) {
+        int target = storage.getAdjacentVertex((int) key);
+        return inMST[target] || (bestRank != null && bestRank[target] != (int) (key >>> 32));
+    }
+
+    private static long heapKey(GraphStorage storage, EdgeOrder order, int slot) {
+        return ((long) order.getRank(storage.getAdjacentEdge(slot)) << 32) | slot;
     }
 }
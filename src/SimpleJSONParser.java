@@ -1,55 +1,329 @@
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
 
 /**
- * Simple JSON parser specifically for our graph data format
+ * Simple JSON parser specifically for our graph data format.
+ * Besides full graphs the "graphs" array may hold deltas, which name an
+ * earlier graph and the changes to apply to it, and have an id of their own:
+ * {"id": 3, "base_id": 1, "add_nodes": [...], "add_edges": [...],
+ *  "remove_edges": [{"from": "A", "to": "B"}], "reweight_edges": [...]}
  */
 public class SimpleJSONParser {
     
     public static List<Graph> parseGraphs(String filename) throws IOException {
-        String content = new String(Files.readAllBytes(Paths.get(filename)));
-        content = content.replaceAll("\\s+", " "); // Normalize whitespace
-        
         List<Graph> graphs = new ArrayList<>();
+        parseGraphs(filename, graphs::add);
+        return graphs;
+    }
+    
+    /**
+     * Stream graphs from the file one at a time. Only the text of the graph
+     * currently being parsed is buffered, so memory does not grow with the
+     * number of graphs in the file.
+     */
+    public static void parseGraphs(String filename, GraphConsumer consumer) throws IOException {
+        parseGraphs(filename, consumer, new GraphCache());
+    }
+    
+    /**
+     * Stream graphs from the file, resolving deltas against the graphs in the
+     * cache. Every graph produced is added to the cache. The file is scanned
+     * for deltas first, so that the cache keeps their base graphs however far
+     * apart they are.
+     */
+    public static void parseGraphs(String filename, GraphConsumer consumer, GraphCache cache) throws IOException {
+        announceDeltas(filename, cache);
+        try (CharInput reader = new CharInput(filename)) {
+            // Find the opening bracket of "graphs" array
+            if (!skipPast(reader, "\"graphs\"") || !skipPast(reader, "[")) {
+                return;
+            }
+            
+            StringBuilder graphStr = new StringBuilder();
+            int depth = 0;
+            int c;
+            while ((c = reader.read()) != -1) {
+                char ch = (char) c;
+                if (depth == 0) {
+                    if (ch == ']') break; // End of graphs array
+                    if (ch != '{') continue;
+                }
+                
+                if (ch == '{') depth++;
+                if (ch == '}') depth--;
+                graphStr.append(ch);
+                
+                if (depth == 0) {
+                    consumer.accept(parseGraph(graphStr.toString(), cache));
+                    graphStr.setLength(0);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Receives graphs as they are parsed
+     */
+    public interface GraphConsumer {
+        void accept(Graph graph) throws IOException;
+    }
+    
+    /**
+     * Tell the cache about every "base_id" in the file. This is a single read
+     * that does not build anything, far cheaper than parsing.
+     */
+    private static void announceDeltas(String filename, GraphCache cache) throws IOException {
+        try (CharInput reader = new CharInput(filename)) {
+            while (skipPast(reader, "\"base_id\"") && skipPast(reader, ":")) {
+                StringBuilder number = new StringBuilder();
+                int c;
+                while ((c = reader.read()) != -1 && (Character.isDigit(c) || c == '-' || Character.isWhitespace(c))) {
+                    if (!Character.isWhitespace(c)) {
+                        number.append((char) c);
+                    }
+                }
+                try {
+                    cache.expectDelta(Integer.parseInt(number.toString()));
+                } catch (NumberFormatException e) {
+                    // Reported when the delta itself is parsed
+                }
+            }
+        }
+    }
+    
+    /**
+     * Buffered character input without the per-call locking of Reader.read(),
+     * which dominates scanning a large file one character at a time
+     */
+    private static final class CharInput implements Closeable {
+        private final Reader reader;
+        private final char[] buffer = new char[1 << 16];
+        private int position;
+        private int limit;
         
-        // Find "graphs" array
-        int graphsStart = content.indexOf("\"graphs\"");
-        if (graphsStart == -1) return graphs;
+        CharInput(String filename) throws IOException {
+            reader = new FileReader(filename);
+        }
         
-        // Find the opening bracket of graphs array
-        int arrayStart = content.indexOf("[", graphsStart);
-        int arrayEnd = findMatchingBracket(content, arrayStart, '[', ']');
+        int read() throws IOException {
+            if (position == limit) {
+                limit = Math.max(reader.read(buffer, 0, buffer.length), 0);
+                position = 0;
+                if (limit == 0) {
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
         
-        String graphsArray = content.substring(arrayStart + 1, arrayEnd);
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+    
+    private static boolean skipPast(CharInput reader, String token) throws IOException {
+        int matched = 0;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == token.charAt(matched)) {
+                matched++;
+            } else {
+                matched = (c == token.charAt(0)) ? 1 : 0;
+            }
+            if (matched == token.length()) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Build the graph for one entry of the "graphs" array. Full graphs with an
+     * up-to-date snapshot in the cache's GraphStore are opened from there
+     * instead of being parsed. Under the cache's memory budget, full graphs
+     * are planned before parsing and built in the planned representation.
+     */
+    private static Graph parseGraph(String entry, GraphCache cache) throws IOException {
+        long version = GraphStore.versionOf(entry);
+        if (!entry.contains("\"base_id\"")) {
+            int id = parseInt(entry, "\"id\"");
+            Graph graph = cache.getStore() == null ? null : cache.getStore().open(id, version);
+            if (graph == null && cache.getMemoryBudgetBytes() > 0) {
+                graph = parsePlanned(id, entry, cache.getMemoryBudgetBytes());
+                if (graph != null) {
+                    graph.setVersion(version);
+                }
+            }
+            if (graph == null) {
+                String graphStr = normalize(entry);
+                List<String> nodes = parseStringArray(graphStr, "\"nodes\"");
+                List<Edge> edges = parseEdges(graphStr, "\"edges\"");
+                graph = new Graph(id, nodes, edges);
+                graph.setVersion(version);
+            }
+            cache.put(graph);
+            return graph;
+        }
         
-        // Parse each graph
-        int pos = 0;
-        while (pos < graphsArray.length()) {
-            int graphStart = graphsArray.indexOf("{", pos);
-            if (graphStart == -1) break;
-            
-            int graphEnd = findMatchingBracket(graphsArray, graphStart, '{', '}');
-            String graphStr = graphsArray.substring(graphStart, graphEnd + 1);
-            
-            graphs.add(parseGraph(graphStr));
-            pos = graphEnd + 1;
+        String graphStr = normalize(entry);
+        // The patched graph is cached under its id, so sharing the base's id
+        // would replace the base before it is solved
+        int baseId = parseInt(graphStr, "\"base_id\"");
+        if (!graphStr.contains("\"id\"")) {
+            throw new IOException("Delta of graph " + baseId + " has no \"id\"");
+        }
+        int id = parseInt(graphStr, "\"id\"");
+        if (id == baseId) {
+            throw new IOException("Delta of graph " + baseId + " needs an id of its own");
         }
+        GraphDelta delta = new GraphDelta(id, baseId,
+            parseStringArray(graphStr, "\"add_nodes\""),
+            parseEdges(graphStr, "\"add_edges\""),
+            parseEdges(graphStr, "\"remove_edges\""),
+            parseEdges(graphStr, "\"reweight_edges\""));
         
-        return graphs;
+        Graph base = cache.getGraph(baseId);
+        if (base == null) {
+            throw new IOException("Graph " + id + " is a delta of unknown graph " + baseId);
+        }
+        try {
+            GraphDelta.Patch patch = delta.apply(base);
+            patch.getGraph().setVersion(GraphStore.versionOf(base.getVersion(), entry));
+            cache.put(patch);
+            return patch.getGraph();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid delta for graph " + id + ": " + e.getMessage(), e);
+        }
     }
     
-    private static Graph parseGraph(String graphStr) {
-        int id = parseInt(graphStr, "\"id\"");
-        List<String> nodes = parseStringArray(graphStr, "\"nodes\"");
-        List<Edge> edges = parseEdges(graphStr);
-        return new Graph(id, nodes, edges);
+    /**
+     * Count the vertices and edges in the entry text, choose the MemoryPlan
+     * for that size and, unless it keeps Edge objects, build the graph straight
+     * into an ArrayGraphStorage or an off-heap storage. Edges are read from
+     * the entry in place (no normalized copy), without Edge objects.
+     * @return the graph, or null if the plan keeps Edge objects
+     */
+    private static Graph parsePlanned(int id, String entry, long budgetBytes) throws IOException {
+        List<String> nodes = parseStringArray(entry, "\"nodes\"");
+        int arrayStart = entry.indexOf("[", Math.max(entry.indexOf("\"edges\""), 0));
+        int arrayEnd = entry.contains("\"edges\"") ? findMatchingBracket(entry, arrayStart, '[', ']') : -1;
+
+        // First pass: edge count and the widest weight type
+        int edgeCount = 0;
+        WeightType weightType = WeightType.INT;
+        for (int edgeStart = nextObject(entry, arrayStart, arrayEnd); edgeStart != -1;
+             edgeStart = nextObject(entry, findMatchingBracket(entry, edgeStart, '{', '}'), arrayEnd)) {
+            int edgeEnd = findMatchingBracket(entry, edgeStart, '{', '}');
+            String weight = parseNumber(entry, "\"weight\"", edgeStart, edgeEnd);
+            weightType = weightType.widen(weight.matches("-?\\d+")
+                ? WeightType.of(Long.parseLong(weight)) : WeightType.DOUBLE);
+            edgeCount++;
+        }
+
+        MemoryPlan plan = MemoryPlan.choose(nodes.size(), edgeCount, entry.length(), budgetBytes);
+        if (plan.getRepresentation() == MemoryPlan.Representation.OBJECTS) {
+            return null;
+        }
+
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            index.put(nodes.get(i), i);
+        }
+        boolean offHeap = plan.getRepresentation() == MemoryPlan.Representation.OFF_HEAP;
+        OffHeapGraphStorage.Builder builder = offHeap
+            ? new OffHeapGraphStorage.Builder(nodes.size(), edgeCount, weightType) : null;
+        int[] from = offHeap ? null : new int[edgeCount];
+        int[] to = offHeap ? null : new int[edgeCount];
+        int[] intWeights = offHeap || weightType != WeightType.INT ? null : new int[edgeCount];
+        long[] longWeights = offHeap || weightType != WeightType.LONG ? null : new long[edgeCount];
+        double[] doubleWeights = offHeap || weightType != WeightType.DOUBLE ? null : new double[edgeCount];
+
+        // Second pass: fill the storage
+        int edge = 0;
+        for (int edgeStart = nextObject(entry, arrayStart, arrayEnd); edgeStart != -1;
+             edgeStart = nextObject(entry, findMatchingBracket(entry, edgeStart, '{', '}'), arrayEnd)) {
+            int edgeEnd = findMatchingBracket(entry, edgeStart, '{', '}');
+            int fromVertex = nodeIndex(id, index, parseString(entry, "\"from\"", edgeStart, edgeEnd));
+            int toVertex = nodeIndex(id, index, parseString(entry, "\"to\"", edgeStart, edgeEnd));
+            String weight = parseNumber(entry, "\"weight\"", edgeStart, edgeEnd);
+            boolean integer = weight.matches("-?\\d+");
+            if (offHeap) {
+                if (integer) {
+                    builder.addEdge(fromVertex, toVertex, Long.parseLong(weight));
+                } else {
+                    builder.addEdge(fromVertex, toVertex, Double.parseDouble(weight) + 0.0);
+                }
+            } else {
+                from[edge] = fromVertex;
+                to[edge] = toVertex;
+                if (intWeights != null) {
+                    intWeights[edge] = Integer.parseInt(weight);
+                } else if (longWeights != null) {
+                    longWeights[edge] = Long.parseLong(weight);
+                } else {
+                    doubleWeights[edge] = integer ? Long.parseLong(weight) : Double.parseDouble(weight) + 0.0;
+                }
+            }
+            edge++;
+        }
+
+        GraphStorage storage;
+        if (offHeap) {
+            storage = builder.build();
+        } else if (weightType == WeightType.DOUBLE) {
+            storage = new ArrayGraphStorage(nodes.size(), from, to, doubleWeights);
+        } else if (weightType == WeightType.LONG) {
+            storage = new ArrayGraphStorage(nodes.size(), from, to, longWeights);
+        } else {
+            storage = new ArrayGraphStorage(nodes.size(), from, to, intWeights);
+        }
+        return new Graph(id, nodes, storage);
+    }
+
+    /**
+     * Position of the next '{' after the given position, up to the end of
+     * the enclosing array, or -1
+     */
+    private static int nextObject(String str, int after, int arrayEnd) {
+        if (after == -1 || arrayEnd == -1) {
+            return -1;
+        }
+        int start = str.indexOf("{", after + 1);
+        return start == -1 || start > arrayEnd ? -1 : start;
+    }
+
+    private static int nodeIndex(int graphId, Map<String, Integer> index, String node) throws IOException {
+        Integer vertex = index.get(node);
+        if (vertex == null) {
+            throw new IOException("Graph " + graphId + " has an edge to unknown node " + node);
+        }
+        return vertex;
+    }
+    
+    private static String normalize(String entry) {
+        return entry.replaceAll("\\s+", " "); // Normalize whitespace
     }
     
     private static int parseInt(String str, String key) {
+        return Integer.parseInt(parseNumber(str, key));
+    }
+    
+    /**
+     * parseNumber within str[start..end]
+     */
+    private static String parseNumber(String str, String key, int start, int end) {
+        int keyPos = str.indexOf(key, start);
+        if (keyPos == -1 || keyPos > end) return "0";
+        
+        int colonPos = str.indexOf(":", keyPos);
+        int commaPos = str.indexOf(",", colonPos);
+        int endPos = (commaPos != -1 && commaPos < end) ? commaPos : end;
+        
+        return str.substring(colonPos + 1, endPos).trim();
+    }
+    
+    private static String parseNumber(String str, String key) {
         int keyPos = str.indexOf(key);
-        if (keyPos == -1) return 0;
+        if (keyPos == -1) return "0";
         
         int colonPos = str.indexOf(":", keyPos);
         int commaPos = str.indexOf(",", colonPos);
@@ -57,8 +331,7 @@ public class SimpleJSONParser {
         
         int endPos = (commaPos != -1 && commaPos < bracePos) ? commaPos : bracePos;
         
-        String numStr = str.substring(colonPos + 1, endPos).trim();
-        return Integer.parseInt(numStr);
+        return str.substring(colonPos + 1, endPos).trim();
     }
     
     private static List<String> parseStringArray(String str, String key) {
@@ -85,10 +358,10 @@ public class SimpleJSONParser {
         return result;
     }
     
-    private static List<Edge> parseEdges(String str) {
+    private static List<Edge> parseEdges(String str, String key) {
         List<Edge> result = new ArrayList<>();
         
-        int edgesPos = str.indexOf("\"edges\"");
+        int edgesPos = str.indexOf(key);
         if (edgesPos == -1) return result;
         
         int arrayStart = str.indexOf("[", edgesPos);
@@ -106,15 +379,34 @@ public class SimpleJSONParser {
             
             String from = parseString(edgeStr, "\"from\"");
             String to = parseString(edgeStr, "\"to\"");
-            int weight = parseInt(edgeStr, "\"weight\"");
+            String weight = parseNumber(edgeStr, "\"weight\"");
             
-            result.add(new Edge(from, to, weight));
+            // Integer weights become int or long edges, anything else double
+            if (weight.matches("-?\\d+")) {
+                result.add(new Edge(from, to, Long.parseLong(weight)));
+            } else {
+                result.add(new Edge(from, to, Double.parseDouble(weight)));
+            }
             pos = edgeEnd + 1;
         }
         
         return result;
     }
     
+    /**
+     * parseString within str[start..end]
+     */
+    private static String parseString(String str, String key, int start, int end) {
+        int keyPos = str.indexOf(key, start);
+        if (keyPos == -1 || keyPos > end) return "";
+        
+        int colonPos = str.indexOf(":", keyPos);
+        int quoteStart = str.indexOf("\"", colonPos);
+        int quoteEnd = str.indexOf("\"", quoteStart + 1);
+        
+        return str.substring(quoteStart + 1, quoteEnd);
+    }
+    
     private static String parseString(String str, String key) {
         int keyPos = str.indexOf(key);
         if (keyPos == -1) return "";
@@ -0,0 +1,174 @@
+import java.util.SplittableRandom;
+
+/**
+ * Command line configuration for MSTSolver
+ */
+public class SolverConfig {
+    private String inputFile = "input.json";
+    private String outputFile = "output_results.json";
+    private boolean pipelined = false;
+    private int queueDepth = 4;
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+    private boolean compareEngines = true;
+    private MSTEngine engine = null;
+    private double verifySampleRate = 0.1;
+    private String graphStoreDir = null;
+    private int timeLimitMillis = 0;
+    private long memoryBudgetBytes = 0;
+
+    /**
+     * Parse arguments of the form: [input.json [output.json]] [--option=value ...]
+     */
+    public static SolverConfig fromArgs(String[] args) {
+        SolverConfig config = new SolverConfig();
+        int positional = 0;
+
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                if (positional == 0) {
+                    config.inputFile = arg;
+                } else if (positional == 1) {
+                    config.outputFile = arg;
+                } else {
+                    throw new IllegalArgumentException("Unexpected argument: " + arg);
+                }
+                positional++;
+                continue;
+            }
+
+            int eq = arg.indexOf('=');
+            String name = eq == -1 ? arg.substring(2) : arg.substring(2, eq);
+            String value = eq == -1 ? null : arg.substring(eq + 1);
+
+            switch (name) {
+                case "pipeline":
+                    config.pipelined = true;
+                    break;
+                case "queue-depth":
+                    config.queueDepth = parsePositiveInt(name, value);
+                    break;
+                case "workers":
+                    config.workerCount = parsePositiveInt(name, value);
+                    break;
+                case "engine":
+                    config.setEngine(value);
+                    break;
+                case "verify-sample":
+                    config.verifySampleRate = parseRate(name, value);
+                    break;
+                case "graph-store":
+                    if (value == null || value.isEmpty()) {
+                        throw new IllegalArgumentException("--graph-store expects a directory");
+                    }
+                    config.graphStoreDir = value;
+                    break;
+                case "time-limit":
+                    config.timeLimitMillis = parsePositiveInt(name, value);
+                    break;
+                case "memory-budget":
+                    config.memoryBudgetBytes = parsePositiveInt(name, value) * (1L << 20);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        return config;
+    }
+
+    public static String usage() {
+        return "Usage: java MSTSolver [input.json [output.json]] [options]\n"
+            + "  --pipeline          overlap parsing, computation and output\n"
+            + "  --queue-depth=N     graphs buffered between pipeline stages (default 4)\n"
+            + "  --workers=N         MST worker threads in pipeline mode (default: CPU count)\n"
+            + "  --engine=MODE       both (run and compare all engines, default), auto (pick one\n"
+            + "                      per graph by size and density), prim, prim-bounded,\n"
+            + "                      prim-dense, prim-parallel, kruskal,\n"
+            + "                      kruskal-external or kkt\n"
+            + "  --verify-sample=P   fraction of graphs re-solved with the other engine when\n"
+            + "                      a single engine is used (default 0.1)\n"
+            + "  --graph-store=DIR   reuse graph snapshots saved in DIR by earlier runs\n"
+            + "  --time-limit=MS     stop solving a graph after MS milliseconds and report\n"
+            + "                      the progress made (default: no limit)\n"
+            + "  --memory-budget=MB  heap allowed per graph; graphs are moved to compact or\n"
+            + "                      off-heap storage, or solved with external-memory Kruskal,\n"
+            + "                      to stay within it (default: no budget)";
+    }
+
+    private static int parsePositiveInt(String name, String value) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed > 0) return parsed;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("--" + name + " expects a positive integer, got: " + value);
+    }
+
+    private void setEngine(String value) {
+        if ("both".equalsIgnoreCase(value)) {
+            compareEngines = true;
+            engine = null;
+        } else if ("auto".equalsIgnoreCase(value)) {
+            compareEngines = false;
+            engine = null;
+        } else {
+            compareEngines = false;
+            engine = MSTEngine.fromKey(String.valueOf(value));
+        }
+    }
+
+    private static double parseRate(String name, String value) {
+        try {
+            double parsed = Double.parseDouble(value);
+            if (parsed >= 0 && parsed <= 1) return parsed;
+        } catch (NumberFormatException | NullPointerException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("--" + name + " expects a value between 0 and 1, got: " + value);
+    }
+
+    /**
+     * Engine to use for a graph, either the configured one or the cost model's choice.
+     * Only meaningful when not comparing all engines.
+     */
+    public MSTEngine engineFor(Graph graph) {
+        return engine != null ? engine : MSTEngine.choose(graph.getVertexCount(), graph.getEdgeCount());
+    }
+
+    /**
+     * Deterministic per-graph sampling decision for cross-checking with a second engine
+     */
+    public boolean shouldVerify(Graph graph) {
+        return verifySampleRate > 0 && new SplittableRandom(graph.getId()).nextDouble() < verifySampleRate;
+    }
+
+    /**
+     * Deadline for solving one graph, started now
+     * @return the control, or null if no time limit is set
+     */
+    public MSTControl newControl() {
+        return timeLimitMillis > 0 ? new MSTControl(timeLimitMillis, null) : null;
+    }
+
+    /**
+     * Memory plan for a graph under the configured budget
+     * @return the plan, or null if no budget is set
+     */
+    public MemoryPlan planFor(Graph graph) {
+        return memoryBudgetBytes > 0 ? MemoryPlan.choose(graph, memoryBudgetBytes) : null;
+    }
+
+    public String getInputFile() { return inputFile; }
+    public String getOutputFile() { return outputFile; }
+    public boolean isPipelined() { return pipelined; }
+    public int getQueueDepth() { return queueDepth; }
+    public int getWorkerCount() { return workerCount; }
+    public boolean isCompareEngines() { return compareEngines; }
+    public double getVerifySampleRate() { return verifySampleRate; }
+    public String getGraphStoreDir() { return graphStoreDir; }
+    /** Milliseconds allowed per graph, or 0 for no limit */
+    public int getTimeLimitMillis() { return timeLimitMillis; }
+    /** Heap budget per graph in bytes, or 0 for no budget */
+    public long getMemoryBudgetBytes() { return memoryBudgetBytes; }
+}
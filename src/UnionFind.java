@@ -1,70 +1,105 @@
 import java.util.*;
 
 /**
- * Union-Find (Disjoint Set Union) data structure with path compression and union by rank
+ * Union-Find (Disjoint Set Union) data structure with path compression and union by rank.
+ * Elements are dense integer ids; the String API maps node names onto them.
  */
 public class UnionFind {
-    private Map<String, String> parent;
-    private Map<String, Integer> rank;
+    private int[] parent;
+    private int[] rank;
+    private List<String> names;
+    private Map<String, Integer> index;
     private int operationsCount;
-
-    public UnionFind(List<String> nodes) {
-        parent = new HashMap<>();
-        rank = new HashMap<>();
+    
+    public UnionFind(int size) {
+        parent = new int[size];
+        rank = new int[size];
         operationsCount = 0;
         
-        for (String node : nodes) {
-            parent.put(node, node);
-            rank.put(node, 0);
-            operationsCount += 2; // Two map insertions
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+            operationsCount += 2; // Two array initializations
         }
     }
-
+    
+    public UnionFind(List<String> nodes) {
+        this(nodes.size());
+        names = new ArrayList<>(nodes);
+        index = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            index.put(nodes.get(i), i);
+        }
+    }
+    
     /**
-     * Find the root of the set containing the given node (with path compression)
+     * Find the root of the set containing the given element (with path compression)
      */
-    public String find(String node) {
-        operationsCount++; // Map lookup
-        if (!parent.get(node).equals(node)) {
-            operationsCount++; // Comparison
-            parent.put(node, find(parent.get(node))); // Path compression
-            operationsCount++; // Map update
+    public int find(int node) {
+        int root = node;
+        operationsCount++; // Array lookup
+        while (parent[root] != root) {
+            root = parent[root];
+            operationsCount++; // Array lookup
         }
-        return parent.get(node);
+        
+        // Path compression
+        while (parent[node] != root) {
+            int next = parent[node];
+            parent[node] = root;
+            node = next;
+            operationsCount += 2; // Comparison + array update
+        }
+        return root;
     }
-
+    
     /**
-     * Union two sets containing the given nodes (by rank)
+     * Union two sets containing the given elements (by rank)
      */
-    public boolean union(String node1, String node2) {
-        String root1 = find(node1);
-        String root2 = find(node2);
+    public boolean union(int node1, int node2) {
+        int root1 = find(node1);
+        int root2 = find(node2);
         
         operationsCount++; // Comparison
-        if (root1.equals(root2)) {
+        if (root1 == root2) {
             return false; // Already in the same set
         }
         
         // Union by rank
-        int rank1 = rank.get(root1);
-        int rank2 = rank.get(root2);
-        operationsCount += 3; // Two map lookups + comparison
+        int rank1 = rank[root1];
+        int rank2 = rank[root2];
+        operationsCount += 3; // Two array lookups + comparison
         
         if (rank1 < rank2) {
-            parent.put(root1, root2);
-            operationsCount++; // Map update
+            parent[root1] = root2;
+            operationsCount++; // Array update
         } else if (rank1 > rank2) {
-            parent.put(root2, root1);
-            operationsCount++; // Map update
+            parent[root2] = root1;
+            operationsCount++; // Array update
         } else {
-            parent.put(root2, root1);
-            rank.put(root1, rank1 + 1);
-            operationsCount += 2; // Two map updates
+            parent[root2] = root1;
+            rank[root1] = rank1 + 1;
+            operationsCount += 2; // Two array updates
         }
         
         return true;
     }
-
+    
+    /**
+     * Find the root node of the set containing the given node
+     */
+    public String find(String node) {
+        operationsCount++; // Map lookup
+        return names.get(find(index.get(node)));
+    }
+    
+    /**
+     * Union two sets containing the given nodes
+     */
+    public boolean union(String node1, String node2) {
+        operationsCount += 2; // Two map lookups
+        return union(index.get(node1), index.get(node2));
+    }
+    
     public int getOperationsCount() {
         return operationsCount;
     }
@@ -0,0 +1,23 @@
+/**
+ * Primitive type of edge weights. Every edge keeps its weight in the narrowest
+ * type that holds it, and a graph uses the widest type among its edges.
+ */
+public enum WeightType {
+    INT,
+    LONG,
+    DOUBLE;
+
+    /**
+     * Narrowest type that can hold the given integer weight
+     */
+    public static WeightType of(long weight) {
+        return weight == (int) weight ? INT : LONG;
+    }
+
+    /**
+     * Type able to hold weights of both this and the other type
+     */
+    public WeightType widen(WeightType other) {
+        return compareTo(other) >= 0 ? this : other;
+    }
+}
@@ -0,0 +1,49 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Min-with-index kernel on the incubating Vector API. Every lane keeps the
+ * smallest value it has seen and where it saw it (updated only on "less
+ * than", so the first position wins), and the lanes are reduced at the end.
+ * <p>
+ * Compiled separately with --add-modules jdk.incubator.vector and loaded by
+ * MinScan only when that module is present at run time; see MinScan.
+ */
+final class VectorMinScan implements MinScan.IntKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public int indexOfMin(int[] values, int from, int to) {
+        int lanes = SPECIES.length();
+        int upper = from + SPECIES.loopBound(to - from);
+        if (upper == from) {
+            return MinScan.scalarIndexOfMin(values, from, to);
+        }
+
+        IntVector min = IntVector.fromArray(SPECIES, values, from);
+        IntVector position = IntVector.zero(SPECIES).addIndex(1).add(from);
+        IntVector index = position;
+        IntVector step = IntVector.broadcast(SPECIES, lanes);
+        for (int i = from + lanes; i < upper; i += lanes) {
+            position = position.add(step);
+            IntVector chunk = IntVector.fromArray(SPECIES, values, i);
+            VectorMask<Integer> less = chunk.lt(min);
+            min = min.blend(chunk, less);
+            index = index.blend(position, less);
+        }
+
+        // First position among the lanes that hold the overall minimum
+        int best = min.reduceLanes(VectorOperators.MIN);
+        int bestIndex = index.blend(Integer.MAX_VALUE, min.compare(VectorOperators.NE, best))
+            .reduceLanes(VectorOperators.MIN);
+        for (int i = upper; i < to; i++) {
+            if (values[i] < best) {
+                best = values[i];
+                bestIndex = i;
+            }
+        }
+        return bestIndex;
+    }
+}
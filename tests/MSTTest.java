@@ -1,5 +1,6 @@
 import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
+import java.nio.file.*;
 import java.util.*;
 
 /**
@@ -251,7 +252,1113 @@ public class MSTTest {
                          " ms, " + kruskalResult.getOperationsCount() + " operations");
     }
     
+    @Test
+    @Order(11)
+    @DisplayName("Test 11: Concurrent Union-Find from multiple threads")
+    public void test11_ConcurrentUnionFind() throws InterruptedException {
+        int size = 10000;
+        ConcurrentUnionFind uf = new ConcurrentUnionFind(size);
+        
+        // Each thread links a strided slice of the chain 0-1-2-...-(size-1)
+        int threadCount = 4;
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = offset; i < size - 1; i += threadCount) {
+                    uf.union(i, i + 1);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertEquals(1, uf.getComponentCount(), "Chain should form a single set");
+        assertTrue(uf.sameSet(0, size - 1), "Ends of the chain should be connected");
+        assertFalse(uf.union(0, size - 1), "Union within a set should fail");
+        
+        List<String> nodes = Arrays.asList("A", "B", "C", "D");
+        Graph connected = new Graph(1, nodes, Arrays.asList(
+            new Edge("A", "B", 1), new Edge("B", "C", 2), new Edge("C", "D", 3)));
+        Graph disconnected = new Graph(2, nodes, Arrays.asList(
+            new Edge("A", "B", 1), new Edge("C", "D", 2)));
+        assertTrue(connected.isConnectedParallel(), "Graph should be connected");
+        assertFalse(disconnected.isConnectedParallel(), "Graph should be disconnected");
+    }
+    
+    @Test
+    @Order(12)
+    @DisplayName("Test 12: Engine selection by graph density")
+    public void test12_EngineSelection() {
+        assertEquals(MSTEngine.KRUSKAL, MSTEngine.choose(1000, 1500),
+            "Sparse graphs should use Kruskal");
+        assertEquals(MSTEngine.PRIM, MSTEngine.choose(20, 190),
+            "Complete graphs should use Prim");
+        assertEquals(MSTEngine.PRIM, MSTEngine.fromKey("prim"));
+        
+        List<String> nodes = Arrays.asList("A", "B", "C");
+        Graph graph = new Graph(1, nodes, Arrays.asList(
+            new Edge("A", "B", 1), new Edge("B", "C", 2), new Edge("A", "C", 3)));
+        GraphResult result = new GraphResult(1, 3, 3, MSTEngine.KRUSKAL, MSTEngine.KRUSKAL.findMST(graph));
+        
+        assertNull(result.getPrimResult(), "Prim should not have been run");
+        assertFalse(result.isCrossChecked(), "Single result cannot be cross-checked");
+        
+        result.addResult(MSTEngine.PRIM, MSTEngine.PRIM.findMST(graph));
+        assertTrue(result.isCrossChecked(), "Both engines should agree on the cost");
+    }
+    
+    @Test
+    @Order(13)
+    @DisplayName("Test 13: Off-heap graph storage")
+    public void test13_OffHeapStorage() {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            nodes.add("V" + i);
+        }
+        List<Edge> edges = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 1; i < nodes.size(); i++) {
+            edges.add(new Edge(nodes.get(random.nextInt(i)), nodes.get(i), random.nextInt(50) + 1));
+            edges.add(new Edge(nodes.get(random.nextInt(i)), nodes.get(i), random.nextInt(50) + 1));
+        }
+        Graph heapGraph = new Graph(1, nodes, edges);
+        
+        Graph offHeapGraph = heapGraph.toOffHeap();
+        assertTrue(offHeapGraph.getStorage() instanceof OffHeapGraphStorage, "Storage should be off-heap");
+        assertEquals(heapGraph.getEdgeCount(), offHeapGraph.getEdgeCount(), "Edge counts should match");
+        assertTrue(offHeapGraph.isConnected(), "Off-heap graph should be connected");
+        assertEquals(PrimAlgorithm.findMST(heapGraph).getTotalCost(), PrimAlgorithm.findMST(offHeapGraph).getTotalCost(),
+            "Prim should give the same cost off-heap");
+        assertEquals(KruskalAlgorithm.findMST(heapGraph).getTotalCost(), KruskalAlgorithm.findMST(offHeapGraph).getTotalCost(),
+            "Kruskal should give the same cost off-heap");
+        
+        offHeapGraph.close();
+        assertThrows(IllegalStateException.class, () -> offHeapGraph.getStorage().getEdgeWeight(0),
+            "Reads after close should fail");
+        
+        OffHeapGraphStorage built = new OffHeapGraphStorage.Builder(3, 2)
+            .addEdge(0, 1, 4)
+            .addEdge(1, 2, 5)
+            .build();
+        try (Graph graph = new Graph(2, Arrays.asList("A", "B", "C"), built)) {
+            assertEquals(9, KruskalAlgorithm.findMST(graph).getTotalCost(), "Cost should be 9");
+            assertEquals(new Edge("A", "B", 4), graph.getEdge(0), "Edges should map back to node names");
+        }
+        
+        // The cache closes graphs it drops, but only once they have been solved
+        GraphCache cache = new GraphCache(1, null);
+        Graph[] moved = new Graph[3];
+        for (int i = 0; i < moved.length; i++) {
+            moved[i] = new Graph(10 + i, nodes, edges);
+            moved[i].moveOffHeap();
+        }
+        cache.put(moved[0]);
+        cache.put(moved[1]);
+        assertFalse(((OffHeapGraphStorage) moved[0].getStorage()).isClosed(), "Dropped while not yet solved");
+        cache.release(moved[0]);
+        assertTrue(((OffHeapGraphStorage) moved[0].getStorage()).isClosed(), "Closed once released");
+        cache.release(moved[1]);
+        cache.put(moved[2]);
+        assertTrue(((OffHeapGraphStorage) moved[1].getStorage()).isClosed(), "Solved, so closed when dropped");
+        assertFalse(((OffHeapGraphStorage) moved[2].getStorage()).isClosed());
+        cache.close();
+        assertTrue(((OffHeapGraphStorage) moved[2].getStorage()).isClosed(), "Closed with the cache");
+    }
+    
+    @Test
+    @Order(14)
+    @DisplayName("Test 14: Canonical MST with equal weights")
+    public void test14_CanonicalTieBreaking() {
+        // Every edge has the same weight, so any spanning tree is minimal
+        List<String> nodes = Arrays.asList("A", "B", "C", "D");
+        List<Edge> edges = Arrays.asList(
+            new Edge("C", "D", 1),
+            new Edge("A", "B", 1),
+            new Edge("D", "A", 1),
+            new Edge("B", "C", 1),
+            new Edge("A", "C", 1)
+        );
+        Graph graph = new Graph(1, nodes, edges);
+        
+        MSTResult prim = PrimAlgorithm.findMST(graph);
+        MSTResult kruskal = KruskalAlgorithm.findMST(graph);
+        MSTResult offHeap = PrimAlgorithm.findMST(graph.toOffHeap());
+        
+        assertEquals(kruskal.getMstEdges(), prim.getMstEdges(), "Engines should emit the same edge list");
+        assertEquals(kruskal.getMstEdges(), offHeap.getMstEdges(), "Storage should not affect the tree");
+        assertEquals(kruskal.getFingerprint(), prim.getFingerprint(), "Fingerprints should match");
+        assertEquals(Arrays.asList(edges.get(1), edges.get(4), edges.get(2)), kruskal.getMstEdges(),
+            "Ties should be broken by the smaller and then the larger endpoint id");
+        
+        MSTResult reversed = new MSTResult(Arrays.asList(new Edge("C", "A", 1), new Edge("B", "A", 1),
+            new Edge("D", "A", 1)), 3, 0, 0);
+        assertEquals(kruskal.getFingerprint(), reversed.getFingerprint(),
+            "Fingerprint should not depend on edge order or direction");
+        
+        assertTrue(new Edge("A", "B", 1).compareTo(new Edge("A", "C", 1)) < 0,
+            "Edge order should break weight ties by endpoints");
+        assertEquals(0, new Edge("A", "B", 1).compareTo(new Edge("B", "A", 1)),
+            "Edge order should be direction independent");
+        assertEquals(0, new Edge("A", "B", 3).compareTo(new Edge("A", "B", 3.0)), "Consistent with equals");
+        assertTrue(new Edge("A", "B", (1L << 53) + 1).compareTo(new Edge("A", "B", 0x1p53)) > 0,
+            "Weights compared exactly beyond 2^53");
+        
+        // Results built from Edge objects take their weight type from the edges
+        MSTResult intTree = new MSTResult(Arrays.asList(new Edge("A", "B", 2_000_000_000),
+            new Edge("B", "C", 2_000_000_000)), 4_000_000_000L, 0, 0);
+        assertEquals(WeightType.INT, intTree.getWeightType());
+        MSTResult doubleTree = new MSTResult(Arrays.asList(new Edge("A", "B", 0.25), new Edge("B", "C", 1)), 1, 0, 0);
+        assertEquals(WeightType.DOUBLE, doubleTree.getWeightType());
+        assertEquals(1.25, doubleTree.getTotalWeight(), 1e-12);
+    }
+    
+    @Test
+    @Order(15)
+    @DisplayName("Test 15: Long and double weights")
+    public void test15_WeightTypes() {
+        // Three edges of 2 billion each overflow an int total
+        List<String> nodes = Arrays.asList("A", "B", "C", "D");
+        Graph heavy = new Graph(1, nodes, Arrays.asList(
+            new Edge("A", "B", 2_000_000_000),
+            new Edge("B", "C", 2_000_000_000),
+            new Edge("C", "D", 2_000_000_000),
+            new Edge("A", "D", 5_000_000_000L)
+        ));
+        assertEquals(WeightType.LONG, heavy.getWeightType(), "Graph should use long weights");
+        assertEquals(6_000_000_000L, PrimAlgorithm.findMST(heavy).getTotalCost(), "Prim cost should not overflow");
+        assertEquals(6_000_000_000L, KruskalAlgorithm.findMST(heavy).getTotalCost(), "Kruskal cost should not overflow");
+        
+        Graph fractional = new Graph(2, nodes, Arrays.asList(
+            new Edge("A", "B", 0.5),
+            new Edge("B", "C", 1.25),
+            new Edge("C", "D", 0.75),
+            new Edge("A", "C", 1.0),
+            new Edge("B", "D", 0.8)
+        ));
+        assertEquals(WeightType.DOUBLE, fractional.getWeightType(), "Graph should use double weights");
+        MSTResult prim = PrimAlgorithm.findMST(fractional);
+        MSTResult kruskal = KruskalAlgorithm.findMST(fractional);
+        MSTResult offHeap = KruskalAlgorithm.findMST(fractional.toOffHeap());
+        assertEquals(2.05, kruskal.getTotalWeight(), 1e-9, "Kruskal should sum double weights");
+        assertEquals(kruskal.getMstEdges(), prim.getMstEdges(), "Engines should agree on double weights");
+        assertEquals(kruskal.getMstEdges(), offHeap.getMstEdges(), "Off-heap storage should keep double weights");
+        
+        // Integer edges of a mixed graph are stored as doubles, but still equal the input edges
+        List<Edge> mixedEdges = Arrays.asList(
+            new Edge("A", "B", 2),
+            new Edge("B", "C", 0.5),
+            new Edge("C", "D", 3_000_000_000L),
+            new Edge("A", "D", 4)
+        );
+        Graph mixed = new Graph(3, nodes, mixedEdges);
+        MSTResult mixedTree = new MSTResult(Arrays.asList(mixedEdges.get(0), mixedEdges.get(1), mixedEdges.get(3)),
+            6, 0, 0);
+        mixed.releaseEdgeObjects();
+        assertEquals(WeightType.DOUBLE, mixed.getEdge(0).getWeightType());
+        assertEquals(mixedEdges, mixed.getEdges(), "Same edges after the Edge objects are released");
+        assertEquals(new HashSet<>(mixedEdges), new HashSet<>(mixed.getEdges()), "Equal hash codes");
+        assertNotNull(mixedTree.getEdgeIndices(mixed), "Tree edges found in the DOUBLE storage");
+        assertEquals(mixedTree.getFingerprint(), KruskalAlgorithm.findMST(mixed).getFingerprint(),
+            "Fingerprint does not depend on the weight type of equal weights");
+        assertEquals(mixedEdges, mixed.toOffHeap().getEdges());
+        assertNotEquals(new Edge("A", "B", 2), new Edge("A", "B", 2.5), "Different weight values");
+    }
+    
+    @Test
+    @Order(16)
+    @DisplayName("Test 16: Bounded-heap Prim on a dense graph")
+    public void test16_BoundedPrim() {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            nodes.add("V" + i);
+        }
+        List<Edge> edges = new ArrayList<>();
+        Random random = new Random(11);
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                edges.add(new Edge(nodes.get(i), nodes.get(j), random.nextInt(1000)));
+            }
+        }
+        Graph graph = new Graph(1, nodes, edges);
+        
+        MSTResult lazy = PrimAlgorithm.findMST(graph);
+        MSTResult bounded = PrimAlgorithm.findMSTBounded(graph, 0.5);
+        MSTResult kruskal = KruskalAlgorithm.findMST(graph);
+        
+        assertEquals(kruskal.getMstEdges(), bounded.getMstEdges(), "Bounded Prim should find the same tree");
+        assertEquals(kruskal.getMstEdges(), lazy.getMstEdges(), "Lazy Prim should find the same tree");
+        
+        long boundedPeak = bounded.getMetrics().get("peak_heap_size");
+        long lazyPeak = lazy.getMetrics().get("peak_heap_size");
+        assertTrue(boundedPeak <= 2 * nodes.size() + nodes.size(),
+            "Bounded heap should stay proportional to V, was " + boundedPeak);
+        assertTrue(boundedPeak < lazyPeak, "Bounded heap should peak below the lazy heap");
+        assertNotNull(bounded.getMetrics().get("heap_compactions"), "Compactions should be reported");
+    }
+    
+    @Test
+    @Order(17)
+    @DisplayName("Test 17: Parallel Prim matches sequential Prim")
+    public void test17_ParallelPrim() {
+        // Road-like grid with many equal weights, so tie-breaking matters
+        int side = 40;
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < side * side; i++) {
+            nodes.add("V" + i);
+        }
+        List<Edge> edges = new ArrayList<>();
+        Random random = new Random(5);
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                int v = row * side + col;
+                if (col + 1 < side) {
+                    edges.add(new Edge(nodes.get(v), nodes.get(v + 1), random.nextInt(10)));
+                }
+                if (row + 1 < side) {
+                    edges.add(new Edge(nodes.get(v), nodes.get(v + side), random.nextInt(10)));
+                }
+            }
+        }
+        Graph graph = new Graph(1, nodes, edges);
+        MSTResult prim = PrimAlgorithm.findMST(graph);
+        
+        for (int workers : new int[]{1, 3, 8, 64}) {
+            MSTResult parallel = ParallelPrimAlgorithm.findMST(graph, workers);
+            assertEquals(prim.getTotalCost(), parallel.getTotalCost(), "Cost with " + workers + " workers");
+            assertEquals(prim.getMstEdges(), parallel.getMstEdges(), "Tree with " + workers + " workers");
+            assertEquals(prim.getFingerprint(), parallel.getFingerprint());
+        }
+        
+        // Disconnected graphs follow the same contract as the other engines
+        Graph disconnected = new Graph(2, Arrays.asList("A", "B", "C", "D"), Arrays.asList(
+            new Edge("A", "B", 1),
+            new Edge("C", "D", 2)
+        ));
+        assertTrue(ParallelPrimAlgorithm.findMST(disconnected).getMstEdges().isEmpty());
+    }
+    
+    @Test
+    @Order(18)
+    @DisplayName("Test 18: Graph snapshots in the graph store")
+    public void test18_GraphStore() throws Exception {
+        Path directory = Files.createTempDirectory("graph-store");
+        GraphStore store = new GraphStore(directory);
+        List<String> nodes = Arrays.asList("A", "B", "C", "D");
+        Graph graph = new Graph(7, nodes, Arrays.asList(
+            new Edge("A", "B", 1),
+            new Edge("A", "C", 4),
+            new Edge("B", "C", 2),
+            new Edge("C", "D", 3),
+            new Edge("B", "D", 5)
+        ));
+        long version = GraphStore.versionOf(graph);
+        assertNull(store.open(graph.getId(), version), "Nothing stored yet");
+        store.save(graph);
+        
+        try (Graph snapshot = store.open(graph.getId(), version)) {
+            assertNotNull(snapshot, "Snapshot should match its version");
+            assertEquals(graph.getVertexCount(), snapshot.getVertexCount());
+            assertEquals(graph.getEdges(), snapshot.getEdges());
+            assertTrue(snapshot.isConnected());
+            assertEquals(KruskalAlgorithm.findMST(graph).getFingerprint(),
+                PrimAlgorithm.findMST(snapshot).getFingerprint());
+        }
+        
+        // A changed graph with the same id must not reuse the old snapshot
+        List<Edge> changed = new ArrayList<>(graph.getEdges());
+        changed.set(0, new Edge(changed.get(0).getFrom(), changed.get(0).getTo(), 99));
+        Graph newVersion = new Graph(graph.getId(), graph.getNodes(), changed);
+        assertNotEquals(version, GraphStore.versionOf(newVersion), "Version should follow the content");
+        assertNull(store.open(graph.getId(), GraphStore.versionOf(newVersion)), "Stale snapshot");
+        
+        // Damaged payloads are detected by the checksum
+        Path file = store.snapshotPath(graph.getId());
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 5] ^= 1;
+        Files.write(file, bytes);
+        assertNull(store.open(graph.getId()), "Damaged snapshot");
+        
+        assertTrue(store.delete(graph.getId()));
+        
+        // A later run with the same input entry opens the snapshot instead of parsing
+        Path input = Files.createTempFile("stored", ".json");
+        List<String> lines = new ArrayList<>(Arrays.asList(
+            "{\"graphs\": [",
+            "  {\"id\": 1, \"nodes\": [\"A\", \"B\", \"C\"], \"edges\": [",
+            "    {\"from\": \"A\", \"to\": \"B\", \"weight\": 1}, {\"from\": \"B\", \"to\": \"C\", \"weight\": 2}]},",
+            "  {\"id\": 2, \"nodes\": [\"X\", \"Y\"], \"edges\": [{\"from\": \"X\", \"to\": \"Y\", \"weight\": 5}]}",
+            "]}"));
+        Files.write(input, lines);
+        SolverConfig config = SolverConfig.fromArgs(new String[]{"--engine=kruskal"});
+        GraphCache cache = new GraphCache(GraphCache.DEFAULT_CAPACITY, store);
+        for (Graph parsed : JSONHandler.readGraphsFromJSON(input.toString(), cache)) {
+            assertFalse(GraphStore.isSnapshot(parsed), "First run parses");
+            MSTSolver.solve(parsed, config, cache);
+        }
+        lines.set(3, lines.get(3).replace("5", "6"));
+        Files.write(input, lines);
+        List<Graph> rerun = JSONHandler.readGraphsFromJSON(input.toString(),
+            new GraphCache(GraphCache.DEFAULT_CAPACITY, store));
+        assertTrue(GraphStore.isSnapshot(rerun.get(0)), "Unchanged entry is opened from the store");
+        assertEquals(Arrays.asList(new Edge("A", "B", 1), new Edge("B", "C", 2)), rerun.get(0).getEdges());
+        assertFalse(GraphStore.isSnapshot(rerun.get(1)), "Changed entry is parsed again");
+        assertEquals(6, rerun.get(1).getEdge(0).getWeight());
+        
+        Files.delete(input);
+        store.delete(1);
+        store.delete(2);
+        Files.delete(directory);
+    }
+    
+    @Test
+    @Order(19)
+    @DisplayName("Test 19: Delta input and incremental MST updates")
+    public void test19_DeltaInput() throws Exception {
+        Path input = Files.createTempFile("delta", ".json");
+        Files.write(input, Arrays.asList(
+            "{\"graphs\": [",
+            "  {\"id\": 1, \"nodes\": [\"A\", \"B\", \"C\", \"D\"], \"edges\": [",
+            "    {\"from\": \"A\", \"to\": \"B\", \"weight\": 1},",
+            "    {\"from\": \"B\", \"to\": \"C\", \"weight\": 2},",
+            "    {\"from\": \"C\", \"to\": \"D\", \"weight\": 3},",
+            "    {\"from\": \"A\", \"to\": \"D\", \"weight\": 9}]},",
+            "  {\"id\": 2, \"base_id\": 1, \"add_nodes\": [\"E\"],",
+            "    \"add_edges\": [{\"from\": \"D\", \"to\": \"E\", \"weight\": 4}],",
+            "    \"remove_edges\": [{\"from\": \"C\", \"to\": \"B\"}],",
+            "    \"reweight_edges\": [{\"from\": \"A\", \"to\": \"D\", \"weight\": 5}]}",
+            "]}"));
+        List<Graph> graphs = SimpleJSONParser.parseGraphs(input.toString());
+        Files.delete(input);
+        
+        assertEquals(2, graphs.size());
+        Graph patched = graphs.get(1);
+        assertEquals(Arrays.asList("A", "B", "C", "D", "E"), patched.getNodes());
+        assertEquals(Arrays.asList(
+            new Edge("A", "B", 1),
+            new Edge("C", "D", 3),
+            new Edge("A", "D", 5),
+            new Edge("D", "E", 4)), patched.getEdges());
+        
+        // The base is kept for its delta however many graphs lie in between
+        List<String> far = new ArrayList<>();
+        far.add("{\"graphs\": [");
+        far.add("  {\"id\": 1, \"nodes\": [\"A\", \"B\"], \"edges\": [{\"from\": \"A\", \"to\": \"B\", \"weight\": 1}]},");
+        for (int id = 2; id <= 2 + GraphCache.DEFAULT_CAPACITY; id++) {
+            far.add("  {\"id\": " + id + ", \"nodes\": [\"X\"], \"edges\": []},");
+        }
+        far.add("  {\"id\": 99, \"base_id\": 1, \"add_nodes\": [\"C\"],");
+        far.add("    \"add_edges\": [{\"from\": \"B\", \"to\": \"C\", \"weight\": 2}]}");
+        far.add("]}");
+        Path farInput = Files.createTempFile("delta", ".json");
+        Files.write(farInput, far);
+        List<Graph> farGraphs = SimpleJSONParser.parseGraphs(farInput.toString());
+        Files.delete(farInput);
+        assertEquals(Arrays.asList("A", "B", "C"), farGraphs.get(farGraphs.size() - 1).getNodes());
+        
+        // Random deltas against random graphs: the update must equal a full recomputation
+        Random random = new Random(19);
+        for (int round = 0; round < 50; round++) {
+            List<String> nodes = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                nodes.add("V" + i);
+            }
+            List<Edge> edges = new ArrayList<>();
+            for (int i = 1; i < nodes.size(); i++) {
+                edges.add(new Edge(nodes.get(random.nextInt(i)), nodes.get(i), random.nextInt(20)));
+            }
+            for (int i = 0; i < 60; i++) {
+                edges.add(new Edge(nodes.get(random.nextInt(30)), nodes.get(random.nextInt(30)), random.nextInt(20)));
+            }
+            Graph base = new Graph(1, nodes, edges);
+            MSTResult baseResult = KruskalAlgorithm.findMST(base);
+            
+            List<Edge> removed = new ArrayList<>();
+            List<Edge> reweighted = new ArrayList<>();
+            Set<String> touched = new HashSet<>();
+            for (int i = 0; i < 4; i++) {
+                Edge edge = edges.get(random.nextInt(edges.size()));
+                String pair = edge.getFrom().compareTo(edge.getTo()) < 0
+                    ? edge.getFrom() + "-" + edge.getTo() : edge.getTo() + "-" + edge.getFrom();
+                if (touched.add(pair)) {
+                    if (i % 2 == 0) {
+                        removed.add(edge);
+                    } else {
+                        reweighted.add(new Edge(edge.getFrom(), edge.getTo(), random.nextInt(20)));
+                    }
+                }
+            }
+            List<Edge> added = Arrays.asList(
+                new Edge(nodes.get(random.nextInt(30)), "W", random.nextInt(20)),
+                new Edge(nodes.get(random.nextInt(30)), nodes.get(random.nextInt(30)), random.nextInt(20)));
+            GraphDelta delta = new GraphDelta(2, 1, Collections.singletonList("W"), added, removed, reweighted);
+            GraphDelta.Patch patch = delta.apply(base);
+            
+            MSTResult updated = IncrementalMST.update(patch, baseResult);
+            MSTResult expected = KruskalAlgorithm.findMST(patch.getGraph());
+            if (round == 0) {
+                // The MST of another version of the base graph is not reused
+                List<Edge> otherWeights = new ArrayList<>();
+                for (Edge edge : edges) {
+                    otherWeights.add(new Edge(edge.getFrom(), edge.getTo(), edge.getWeight() + 100));
+                }
+                MSTResult otherResult = KruskalAlgorithm.findMST(new Graph(1, nodes, otherWeights));
+                assertNull(IncrementalMST.update(patch, otherResult), "Base result of another graph version");
+            }
+            if (patch.getGraph().isConnected()) {
+                assertNotNull(updated, "Round " + round);
+                assertEquals(expected.getMstEdges(), updated.getMstEdges(), "Round " + round);
+            } else {
+                assertNull(updated, "Round " + round);
+            }
+        }
+        
+        // The patched graph reads through to the base storage instead of copying
+        // its edges; parallel edges and self-loops match by endpoints, whether
+        // the base adjacency is built or not
+        for (boolean adjacency : new boolean[]{false, true}) {
+            Graph multi = new Graph(1, Arrays.asList("A", "B", "C"), Arrays.asList(
+                new Edge("A", "B", 4),
+                new Edge("B", "B", 7),
+                new Edge("B", "A", 2),
+                new Edge("B", "C", 3),
+                new Edge("C", "A", 5)));
+            multi.moveOffHeap();
+            if (adjacency) {
+                multi.getStorage().getAdjacencyStart(0);
+            }
+            GraphDelta.Patch multiPatch = new GraphDelta(2, 1, Collections.singletonList("D"),
+                Collections.singletonList(new Edge("D", "C", 2.5)),
+                Collections.singletonList(new Edge("A", "B", 0)),
+                Arrays.asList(new Edge("B", "B", 1), new Edge("A", "C", 1))).apply(multi);
+            Graph patchedMulti = multiPatch.getGraph();
+            assertFalse(patchedMulti.hasEdgeObjects());
+            assertEquals(WeightType.DOUBLE, patchedMulti.getWeightType());
+            assertEquals(Arrays.asList(
+                new Edge("B", "B", 1),
+                new Edge("B", "C", 3),
+                new Edge("C", "A", 1),
+                new Edge("D", "C", 2.5)), patchedMulti.getEdges());
+            assertEquals(-1, multiPatch.getNewIndex(2));
+            assertEquals(3, multiPatch.getBaseIndex(1));
+            assertEquals(Arrays.asList(0, 2), Arrays.asList(multiPatch.getReweightedEdges()[0],
+                multiPatch.getReweightedEdges()[1]));
+            Graph copied = new Graph(2, patchedMulti.getNodes(), new ArrayList<>(patchedMulti.getEdges()));
+            assertEquals(KruskalAlgorithm.findMST(copied).getFingerprint(),
+                PrimAlgorithm.findMST(patchedMulti).getFingerprint());
+            
+            // The base stays open until the patched graph is closed too
+            multi.close();
+            assertEquals(new Edge("B", "C", 3), patchedMulti.getEdge(1));
+            patchedMulti.close();
+            assertThrows(IllegalStateException.class, () -> multi.getStorage().getEdgeFrom(0));
+        }
+        
+        // A subset sorted on its own keeps the canonical order of the full sort
+        EdgeOrder order = graphs.get(0).getEdgeOrder();
+        int[] subset = {3, 0, 2};
+        int[] expectedOrder = new int[subset.length];
+        int next = 0;
+        for (int position = 0; position < order.size(); position++) {
+            int edge = order.getEdge(position);
+            if (edge == 0 || edge == 2 || edge == 3) {
+                expectedOrder[next++] = edge;
+            }
+        }
+        assertEquals(Arrays.toString(expectedOrder),
+            Arrays.toString(EdgeOrder.sort(graphs.get(0).getStorage(), subset, subset.length)));
+    }
+    
+    @Test
+    @Order(20)
+    @DisplayName("Test 20: Lazy graph structures and read-only views")
+    public void test20_LazyGraph() {
+        List<String> nodes = Arrays.asList("A", "B", "C", "D");
+        Graph graph = new Graph(1, nodes, Arrays.asList(
+            new Edge("A", "B", 1),
+            new Edge("B", "C", 2),
+            new Edge("C", "D", 3),
+            new Edge("A", "D", 4)
+        ));
+        
+        assertSame(graph.getEdges(), graph.getEdges(), "Edges should be shared, not copied");
+        assertSame(graph.getNodes(), graph.getNodes(), "Nodes should be shared, not copied");
+        assertThrows(UnsupportedOperationException.class, () -> graph.getEdges().add(new Edge("A", "C", 5)));
+        assertThrows(UnsupportedOperationException.class, () -> graph.getNodes().remove(0));
+        
+        // Kruskal (and the connectivity check it does) only read the edge arrays
+        MSTResult kruskal = KruskalAlgorithm.findMST(graph);
+        assertEquals(3, kruskal.getMstEdges().size());
+        assertFalse(graph.getStorage().isAdjacencyBuilt(), "Kruskal should not build adjacency");
+        
+        MSTResult prim = PrimAlgorithm.findMST(graph);
+        assertTrue(graph.getStorage().isAdjacencyBuilt(), "Prim builds adjacency on demand");
+        assertEquals(kruskal.getMstEdges(), prim.getMstEdges());
+        
+        assertEquals(2, graph.getAdjacencyList().get("A").size());
+        assertThrows(UnsupportedOperationException.class, () -> graph.getAdjacencyList().get("A").clear());
+        
+        Graph offHeap = graph.toOffHeap();
+        assertEquals(graph.getEdges(), offHeap.getEdges(), "Storage-backed edge view");
+        offHeap.close();
+    }
+    
+    @Test
+    @Order(21)
+    @DisplayName("Test 21: Dense Prim and min-with-index scans")
+    public void test21_DensePrim() {
+        assertEquals(-1, MinScan.indexOfMin(new int[]{3, 1}, 1, 1), "Empty range");
+        assertEquals(1, MinScan.indexOfMin(new int[]{5, 2, 7, 2}, 0, 4), "First minimum wins");
+        
+        // Long ranges go to the vector kernel when it is available; both kernels
+        // must return the first minimum, including ties and ranges with a tail
+        Random scanRandom = new Random(37);
+        for (int trial = 0; trial < 200; trial++) {
+            int[] values = new int[1 + scanRandom.nextInt(300)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = scanRandom.nextInt(trial % 2 == 0 ? 8 : Integer.MAX_VALUE);
+            }
+            int from = scanRandom.nextInt(values.length);
+            int to = from + scanRandom.nextInt(values.length - from + 1);
+            assertEquals(MinScan.scalarIndexOfMin(values, from, to), MinScan.indexOfMin(values, from, to),
+                "Kernels disagree on [" + from + ", " + to + ")" + (MinScan.isVectorized() ? " (vectorized)" : ""));
+        }
+        
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            nodes.add("V" + i);
+        }
+        List<Edge> edges = new ArrayList<>();
+        Random random = new Random(21);
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                if (random.nextInt(4) != 0) {
+                    edges.add(new Edge(nodes.get(i), nodes.get(j), random.nextInt(50)));
+                }
+            }
+        }
+        Graph graph = new Graph(1, nodes, edges);
+        
+        MSTResult dense = DensePrimAlgorithm.findMST(graph);
+        MSTResult kruskal = KruskalAlgorithm.findMST(graph);
+        assertEquals(kruskal.getMstEdges(), dense.getMstEdges(), "Dense Prim should find the same tree");
+        assertEquals(kruskal.getFingerprint(), dense.getFingerprint());
+        assertEquals(MSTEngine.PRIM_DENSE, MSTEngine.fromKey("prim-dense"));
+    }
+
+    @Test
+    @Order(22)
+    @DisplayName("Test 22: Randomized KKT engine")
+    public void test22_KKT() {
+        // Few distinct weights, parallel edges and self-loops exercise the tie-breaks
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            nodes.add("V" + i);
+        }
+        List<Edge> edges = new ArrayList<>();
+        Random random = new Random(22);
+        for (int i = 1; i < nodes.size(); i++) {
+            edges.add(new Edge(nodes.get(random.nextInt(i)), nodes.get(i), random.nextInt(10)));
+        }
+        for (int i = 0; i < 3000; i++) {
+            edges.add(new Edge(nodes.get(random.nextInt(600)), nodes.get(random.nextInt(600)), random.nextInt(10)));
+        }
+        Graph graph = new Graph(1, nodes, edges);
+
+        MSTResult kkt = KKTAlgorithm.findMST(graph);
+        MSTResult kruskal = KruskalAlgorithm.findMST(graph);
+        assertEquals(kruskal.getMstEdges(), kkt.getMstEdges(), "KKT should find the canonical tree");
+        assertEquals(kruskal.getFingerprint(), kkt.getFingerprint());
+        assertTrue(kkt.getMetrics().get("heavy_edges") > 0, "Sampling should filter heavy edges");
+        assertEquals(MSTEngine.KKT, MSTEngine.fromKey("kkt"));
+
+        // Path maxima on the forest {0-1 (label 5), 1-2 (label 7)} plus isolated vertex 3
+        int[] pathMax = ForestPathMax.query(4, new int[]{0, 1}, new int[]{1, 2}, new int[]{5, 7}, 2,
+            new int[]{0, 2, 0, 1}, new int[]{2, 1, 3, 1}, 4, Integer::compare);
+        assertEquals(7, pathMax[0]);
+        assertEquals(7, pathMax[1]);
+        assertEquals(ForestPathMax.NO_PATH, pathMax[2], "Different trees");
+        assertEquals(ForestPathMax.NO_PATH, pathMax[3], "Empty path");
+    }
+
+    @Test
+    @Order(23)
+    @DisplayName("Test 23: MST verification without a second engine")
+    public void test23_MSTVerifier() throws Exception {
+        List<String> nodes = Arrays.asList("A", "B", "C", "D");
+        List<Edge> edges = Arrays.asList(
+            new Edge("A", "B", 1),
+            new Edge("B", "C", 2),
+            new Edge("C", "D", 3),
+            new Edge("A", "D", 4),
+            new Edge("A", "C", 2),
+            new Edge("D", "D", 0)
+        );
+        Graph graph = new Graph(1, nodes, edges);
+        
+        MSTResult kruskal = KruskalAlgorithm.findMST(graph);
+        assertNull(MSTVerifier.check(graph, kruskal));
+        
+        // Another minimum tree (A-C instead of B-C) passes, built from Edge objects only
+        MSTResult other = new MSTResult(Arrays.asList(edges.get(0), edges.get(4), edges.get(2)), 6, 0, 0);
+        assertTrue(MSTVerifier.isValid(graph, other), "Any minimum tree is accepted");
+        
+        MSTResult heavy = new MSTResult(Arrays.asList(edges.get(0), edges.get(1), edges.get(3)), 7, 0, 0);
+        assertNotNull(MSTVerifier.check(graph, heavy), "A-D is heavier than C-D on its cycle");
+        
+        MSTResult cycle = new MSTResult(Arrays.asList(edges.get(0), edges.get(1), edges.get(4)), 5, 0, 0);
+        assertFalse(MSTVerifier.isValid(graph, cycle), "A-B-C cycle does not span D");
+        
+        MSTResult wrongTotal = new MSTResult(Arrays.asList(edges.get(0), edges.get(1), edges.get(2)), 5, 0, 0);
+        assertFalse(MSTVerifier.isValid(graph, wrongTotal));
+        
+        MSTResult shortTree = new MSTResult(Arrays.asList(edges.get(0), edges.get(1)), 3, 0, 0);
+        assertFalse(MSTVerifier.isValid(graph, shortTree));
+        
+        // Stored edge indices are only used for the graph they point into; in
+        // the same graph with its edges reversed the tree is found by matching
+        List<Edge> reversedEdges = new ArrayList<>(edges);
+        Collections.reverse(reversedEdges);
+        Graph reversed = new Graph(2, nodes, reversedEdges);
+        int[] matched = kruskal.getEdgeIndices(reversed);
+        assertNotNull(matched);
+        for (int i = 0; i < matched.length; i++) {
+            assertEquals(kruskal.getMstEdges().get(i), reversed.getEdge(matched[i]));
+        }
+        assertSame(kruskal.getEdgeIndices(), kruskal.getEdgeIndices(graph), "Own graph: stored indices");
+        assertNull(MSTVerifier.check(reversed, kruskal));
+        Graph missingEdge = new Graph(3, nodes, edges.subList(0, 3));
+        assertFalse(MSTVerifier.isValid(missingEdge, kruskal), "A-C is not an edge of this graph");
+        
+        // The solver verifies single-engine results
+        SolverConfig config = SolverConfig.fromArgs(new String[]{"--engine=kruskal", "--verify-sample=0"});
+        GraphResult result = MSTSolver.solve(graph, config);
+        assertTrue(result.isVerifierRun());
+        assertTrue(result.isVerified());
+        assertEquals(1, result.getResults().size(), "No second engine run");
+        
+        // Problems and node names are written as escaped JSON strings
+        Edge quoted = new Edge("say \"hi\"", "back\\slash", 1);
+        Graph named = new Graph(4, Arrays.asList(quoted.getFrom(), quoted.getTo()), Arrays.asList(quoted));
+        GraphResult written = new GraphResult(4, 2, 1, MSTEngine.KRUSKAL, KruskalAlgorithm.findMST(named));
+        written.setVerification("Edge \"A\"-\"B\"\nis\theavier\u0001");
+        written.setFailure("Run file C:\\tmp\\run.bin");
+        Path output = Files.createTempFile("escaped", ".json");
+        JSONHandler.writeResultsToJSON(output.toString(), Arrays.asList(written));
+        String json = new String(Files.readAllBytes(output), java.nio.charset.StandardCharsets.UTF_8);
+        Files.delete(output);
+        assertTrue(json.contains("\"verification_error\": \"Edge \\\"A\\\"-\\\"B\\\"\\nis\\theavier\\u0001\","), json);
+        assertTrue(json.contains("\"error\": \"Run file C:\\\\tmp\\\\run.bin\","), json);
+        assertTrue(json.contains("{\"from\": \"say \\\"hi\\\"\", \"to\": \"back\\\\slash\", \"weight\": 1}"), json);
+    }
+
+    @Test
+    @Order(24)
+    @DisplayName("Test 24: Cancellation, deadlines and progress")
+    public void test24_MSTControl() {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            nodes.add("V" + i);
+        }
+        List<Edge> edges = new ArrayList<>();
+        Random random = new Random(24);
+        for (int i = 1; i < nodes.size(); i++) {
+            edges.add(new Edge(nodes.get(random.nextInt(i)), nodes.get(i), random.nextInt(100)));
+        }
+        for (int i = 0; i < 20000; i++) {
+            edges.add(new Edge(nodes.get(random.nextInt(2000)), nodes.get(random.nextInt(2000)), random.nextInt(100)));
+        }
+        Graph graph = new Graph(1, nodes, edges);
+        
+        // Progress is reported and an unlimited run completes unchanged
+        List<Integer> components = new ArrayList<>();
+        MSTResult kruskal = KruskalAlgorithm.findMST(graph,
+            new MSTControl(0, (processed, remaining) -> components.add(remaining)));
+        assertEquals(KruskalAlgorithm.findMST(graph).getFingerprint(), kruskal.getFingerprint());
+        assertTrue(components.size() > 2, "Checkpoints inside the loop");
+        assertTrue(components.get(components.size() - 1) < nodes.size(), "Components go down");
+        
+        // Cancelled from the listener: stops at the next checkpoint with partial progress
+        MSTControl[] holder = new MSTControl[1];
+        holder[0] = new MSTControl(0, (processed, remaining) -> {
+            if (processed > 0) holder[0].cancel();
+        });
+        MSTCancelledException cancelled = assertThrows(MSTCancelledException.class,
+            () -> PrimAlgorithm.findMST(graph, holder[0]));
+        assertFalse(cancelled.isDeadlineExceeded());
+        assertEquals(MSTControl.CHECK_INTERVAL, cancelled.getEdgesProcessed());
+        assertTrue(cancelled.getComponentsRemaining() > 1);
+        
+        // Deadline passes while the listener is busy
+        MSTControl deadline = new MSTControl(1, (processed, remaining) -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        MSTCancelledException expired = assertThrows(MSTCancelledException.class,
+            () -> MSTEngine.KRUSKAL.findMST(graph, deadline));
+        assertTrue(expired.isDeadlineExceeded());
+        
+        // Every engine checks the control inside its main loop, not only around the run
+        long expectedFingerprint = kruskal.getFingerprint();
+        for (MSTEngine engine : MSTEngine.values()) {
+            assertEquals(expectedFingerprint, engine.findMST(graph, new MSTControl(0, null)).getFingerprint(),
+                engine.getKey());
+            if (engine == MSTEngine.PRIM_PARALLEL) {
+                continue; // A single worker may finish the tree before any checkpoint, see below
+            }
+            MSTControl[] inLoop = new MSTControl[1];
+            inLoop[0] = new MSTControl(0, (processed, remaining) -> {
+                if (processed > 0) inLoop[0].cancel();
+            });
+            MSTCancelledException engineStopped = assertThrows(MSTCancelledException.class,
+                () -> engine.findMST(graph, inLoop[0]), engine.getKey());
+            assertTrue(engineStopped.getEdgesProcessed() > 0, engine.getKey() + " stopped in its loop");
+            assertTrue(engineStopped.getComponentsRemaining() > 1, engine.getKey());
+        }
+        // Parallel workers poll the control: here the deadline passes once the trees grow
+        MSTControl expiresInWorkers = new MSTControl(0, null) {
+            private final java.util.concurrent.atomic.AtomicInteger calls = new java.util.concurrent.atomic.AtomicInteger();
+            
+            @Override
+            public boolean isExpired() {
+                return calls.incrementAndGet() > 2; // The two checkpoints before the workers start pass
+            }
+        };
+        MSTCancelledException workersStopped = assertThrows(MSTCancelledException.class,
+            () -> ParallelPrimAlgorithm.findMST(graph, 4, expiresInWorkers));
+        assertTrue(workersStopped.isDeadlineExceeded());
+        assertTrue(workersStopped.getEdgesProcessed() > 0, "Workers stopped while growing");
+        assertTrue(workersStopped.getComponentsRemaining() > 1);
+        
+        // Incremental updates check the control once Borůvka has reconnected the tree
+        MSTResult baseResult = KruskalAlgorithm.findMST(graph);
+        GraphDelta.Patch patch = new GraphDelta(2, 1, Collections.emptyList(), Collections.emptyList(),
+            Collections.singletonList(baseResult.getMstEdges().get(0)), Collections.emptyList()).apply(graph);
+        MSTResult updated = IncrementalMST.update(patch, baseResult, new MSTControl(0, null));
+        assertEquals(IncrementalMST.update(patch, baseResult).getFingerprint(), updated.getFingerprint());
+        MSTControl[] incremental = new MSTControl[1];
+        incremental[0] = new MSTControl(0, (processed, remaining) -> {
+            if (processed > 0) incremental[0].cancel();
+        });
+        MSTCancelledException stoppedUpdate = assertThrows(MSTCancelledException.class,
+            () -> IncrementalMST.update(patch, baseResult, incremental[0]));
+        assertTrue(stoppedUpdate.getEdgesProcessed() > 0);
+        assertTrue(stoppedUpdate.getEdgesProcessed() < graph.getEdgeCount(), "Only edges at the cut are scanned");
+        
+        SolverConfig config = SolverConfig.fromArgs(new String[]{"--time-limit=500"});
+        assertEquals(500, config.getTimeLimitMillis());
+        assertNotNull(config.newControl());
+        assertNull(SolverConfig.fromArgs(new String[0]).newControl(), "No limit by default");
+    }
+
+    @Test
+    @Order(25)
+    @DisplayName("Test 25: Memory-budgeted representation and engine choice")
+    public void test25_MemoryPlan() throws Exception {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            nodes.add("V" + i);
+        }
+        List<Edge> edges = new ArrayList<>();
+        Random random = new Random(25);
+        for (int i = 1; i < nodes.size(); i++) {
+            edges.add(new Edge(nodes.get(random.nextInt(i)), nodes.get(i), random.nextInt(20)));
+        }
+        for (int i = 0; i < 1500; i++) {
+            edges.add(new Edge(nodes.get(random.nextInt(300)), nodes.get(random.nextInt(300)), random.nextInt(20)));
+        }
+        Graph graph = new Graph(1, nodes, edges);
+        MSTResult expected = KruskalAlgorithm.findMST(new Graph(1, nodes, edges));
+        int v = graph.getVertexCount();
+        int e = graph.getEdgeCount();
+        
+        // Each budget picks the first option that fits
+        long objects = MemoryPlan.estimate(MemoryPlan.Representation.OBJECTS, false, v, e);
+        long compact = MemoryPlan.estimate(MemoryPlan.Representation.COMPACT, false, v, e);
+        long offHeap = MemoryPlan.estimate(MemoryPlan.Representation.OFF_HEAP, false, v, e);
+        assertTrue(objects > compact && compact > offHeap);
+        assertEquals(MemoryPlan.Representation.OBJECTS, MemoryPlan.choose(graph, objects).getRepresentation());
+        MemoryPlan compactPlan = MemoryPlan.choose(graph, objects - 1);
+        assertEquals(MemoryPlan.Representation.COMPACT, compactPlan.getRepresentation());
+        assertNull(compactPlan.getEngine());
+        MemoryPlan externalPlan = MemoryPlan.choose(graph, 1);
+        assertEquals(MemoryPlan.Representation.OFF_HEAP, externalPlan.getRepresentation());
+        assertEquals(MSTEngine.KRUSKAL_EXTERNAL, externalPlan.getEngine());
+        assertFalse(externalPlan.fits(), "Nothing fits in one byte");
+        
+        // Conversions happen in place and keep edge indices
+        compactPlan.apply(graph);
+        assertFalse(graph.hasEdgeObjects());
+        assertEquals(edges.get(7), graph.getEdges().get(7));
+        externalPlan.apply(graph);
+        assertTrue(graph.getStorage().isOffHeap());
+        assertEquals(MemoryPlan.Representation.COMPACT, MemoryPlan.choose(new Graph(2, nodes, edges), compact)
+            .getRepresentation());
+        assertEquals(MemoryPlan.Representation.OFF_HEAP, MemoryPlan.choose(graph, objects).getRepresentation(),
+            "Never moves back to the heap");
+        
+        // External Kruskal over many small runs finds the canonical tree
+        Path tempDir = Files.createTempDirectory("mst-runs");
+        try {
+            MSTResult external = ExternalKruskalAlgorithm.findMST(graph, 64, tempDir);
+            assertEquals(expected.getMstEdges(), external.getMstEdges());
+            assertEquals((e + 63) / 64, (long) external.getMetrics().get("sorted_runs"));
+            assertEquals(0, (long) external.getMetrics().get("merge_passes"));
+            // More runs than one merge takes are merged in passes first
+            MSTResult passes = ExternalKruskalAlgorithm.findMST(graph, 4, tempDir);
+            assertEquals(expected.getMstEdges(), passes.getMstEdges());
+            assertEquals(1, (long) passes.getMetrics().get("merge_passes"), "450 runs, then 8");
+            try (java.util.stream.Stream<Path> left = Files.list(tempDir)) {
+                assertEquals(0, left.count(), "Run files are deleted");
+            }
+        } finally {
+            Files.deleteIfExists(tempDir);
+        }
+        
+        graph.close();
+        
+        // The solver follows the plan and reports it (1 MB is too small for 40000 edges in memory)
+        List<Edge> moreEdges = new ArrayList<>(edges);
+        while (moreEdges.size() < 40000) {
+            moreEdges.add(new Edge(nodes.get(random.nextInt(300)), nodes.get(random.nextInt(300)), 20 + random.nextInt(20)));
+        }
+        SolverConfig config = SolverConfig.fromArgs(new String[]{"--memory-budget=1"});
+        GraphResult result = MSTSolver.solve(new Graph(3, nodes, moreEdges), config);
+        assertEquals(MSTEngine.KRUSKAL_EXTERNAL, result.getSelectedEngine());
+        assertEquals(expected.getFingerprint(), result.getResult(MSTEngine.KRUSKAL_EXTERNAL).getFingerprint(),
+            "Added edges are all heavier than the tree");
+        assertEquals(MemoryPlan.Representation.OFF_HEAP, result.getMemoryPlan().getRepresentation());
+        assertTrue(result.getProcessPeakHeapBytes() > 0);
+        
+        // Deltas follow the plan too: updated in memory when that fits, else solved externally
+        GraphCache cache = new GraphCache();
+        for (int round = 0; round < 2; round++) {
+            Graph base = new Graph(10, nodes, round == 0 ? edges : moreEdges);
+            cache.put(base);
+            MSTResult baseResult = KruskalAlgorithm.findMST(base);
+            cache.putResult(base, baseResult);
+            GraphDelta.Patch patch = new GraphDelta(11, 10, Collections.emptyList(), Collections.emptyList(),
+                Collections.singletonList(baseResult.getMstEdges().get(0)), Collections.emptyList()).apply(base);
+            cache.put(patch);
+            GraphResult deltaResult = MSTSolver.solve(patch.getGraph(), config, cache);
+            assertNotNull(deltaResult.getMemoryPlan(), "The plan is reported for deltas");
+            if (round == 0) {
+                assertTrue(deltaResult.isIncremental(), "1800 edges fit in memory");
+                assertNull(deltaResult.getMemoryPlan().getEngine());
+            } else {
+                assertFalse(deltaResult.isIncremental(), "40000 edges do not");
+                assertEquals(MSTEngine.KRUSKAL_EXTERNAL, deltaResult.getSelectedEngine());
+            }
+            assertEquals(KruskalAlgorithm.findMST(new Graph(11, nodes, patch.getGraph().getEdges())).getFingerprint(),
+                deltaResult.getPrimaryResult().getFingerprint());
+        }
+        cache.close();
+        
+        // Under a budget the parser plans each graph from the counts in its
+        // entry text and builds it in that representation, without Edge objects
+        StringBuilder entry = new StringBuilder("{\"id\": 5, \"nodes\": [");
+        for (int i = 0; i < nodes.size(); i++) {
+            entry.append(i == 0 ? "" : ", ").append('"').append(nodes.get(i)).append('"');
+        }
+        entry.append("], \"edges\": [");
+        List<Edge> mixed = new ArrayList<>();
+        for (int i = 0; i < edges.size(); i++) {
+            Edge edge = edges.get(i);
+            Edge weighted = i % 3 == 0 ? new Edge(edge.getFrom(), edge.getTo(), edge.getWeight() + 0.5)
+                : i % 3 == 1 ? new Edge(edge.getFrom(), edge.getTo(), edge.getWeight() + (1L << 40)) : edge;
+            mixed.add(weighted);
+            entry.append(i == 0 ? "" : ", ").append("{\"from\": \"").append(edge.getFrom())
+                .append("\", \"to\": \"").append(edge.getTo()).append("\", \"weight\": ")
+                .append(weighted.formatWeight()).append('}');
+        }
+        entry.append("]}");
+        long textChars = entry.length();
+        long parsedObjects = MemoryPlan.estimateParsing(MemoryPlan.Representation.OBJECTS, v, e, textChars);
+        assertTrue(parsedObjects > objects, "The entry text counts while parsing");
+        long compactBudget = Math.max(compact,
+            MemoryPlan.estimateParsing(MemoryPlan.Representation.COMPACT, v, e, textChars));
+        assertEquals(MemoryPlan.Representation.COMPACT,
+            MemoryPlan.choose(v, e, textChars, compactBudget).getRepresentation());
+        
+        Path planned = Files.createTempFile("planned", ".json");
+        Files.write(planned, Collections.singletonList("{\"graphs\": [" + entry + "]}"));
+        Graph expectedMixed = new Graph(5, nodes, mixed);
+        long[] budgets = {parsedObjects * 2, compactBudget, 1};
+        MemoryPlan.Representation[] built = {MemoryPlan.Representation.OBJECTS,
+            MemoryPlan.Representation.COMPACT, MemoryPlan.Representation.OFF_HEAP};
+        for (int i = 0; i < budgets.length; i++) {
+            try (GraphCache plannedCache = new GraphCache(GraphCache.DEFAULT_CAPACITY, null, budgets[i])) {
+                List<Graph> parsed = new ArrayList<>();
+                SimpleJSONParser.parseGraphs(planned.toString(), parsed::add, plannedCache);
+                Graph graph5 = parsed.get(0);
+                assertEquals(built[i] == MemoryPlan.Representation.OBJECTS, graph5.hasEdgeObjects(), built[i].getKey());
+                assertEquals(built[i] == MemoryPlan.Representation.OFF_HEAP, graph5.getStorage().isOffHeap(),
+                    built[i].getKey());
+                assertEquals(WeightType.DOUBLE, graph5.getWeightType());
+                assertEquals(mixed, graph5.getEdges());
+                assertEquals(KruskalAlgorithm.findMST(expectedMixed).getFingerprint(),
+                    KruskalAlgorithm.findMST(graph5).getFingerprint());
+            }
+        }
+        Files.delete(planned);
+    }
+
+    @Test
+    @Order(26)
+    @DisplayName("Test 26: Bottleneck path queries from the MST")
+    public void test26_MSTQueryIndex() {
+        List<String> nodes = Arrays.asList("A", "B", "C", "D", "E");
+        List<Edge> edges = Arrays.asList(
+            new Edge("A", "B", 4),
+            new Edge("B", "C", 1),
+            new Edge("C", "D", 7),
+            new Edge("A", "C", 9),
+            new Edge("D", "E", 2),
+            new Edge("B", "D", 8)
+        );
+        Graph graph = new Graph(1, nodes, edges);
+        MSTQueryIndex index = new MSTQueryIndex(graph, KruskalAlgorithm.findMST(graph));
+        
+        assertEquals(new Edge("C", "D", 7), index.bottleneckEdge("A", "E"), "A-B-C-D-E is the minimax path");
+        assertEquals(new Edge("A", "B", 4), index.bottleneckEdge("C", "A"));
+        assertNull(index.bottleneckEdge("A", "A"), "Empty path");
+        assertThrows(IllegalArgumentException.class, () -> index.bottleneckEdge("A", "Z"));
+        
+        // Results of other graphs: their edge indices must not be trusted
+        List<Edge> withShortcut = new ArrayList<>(edges);
+        withShortcut.add(new Edge("A", "E", 0));
+        MSTResult shortcutTree = KruskalAlgorithm.findMST(new Graph(2, nodes, withShortcut));
+        assertTrue(Arrays.stream(shortcutTree.getEdgeIndices()).anyMatch(i -> i >= edges.size()));
+        assertThrows(IllegalArgumentException.class, () -> new MSTQueryIndex(graph, shortcutTree),
+            "Index past the edge count");
+        List<Edge> reweighted = new ArrayList<>(edges);
+        reweighted.set(2, new Edge("C", "D", 3));
+        MSTResult reweightedTree = KruskalAlgorithm.findMST(new Graph(3, nodes, reweighted));
+        assertEquals(Arrays.toString(Arrays.stream(KruskalAlgorithm.findMST(graph).getEdgeIndices()).sorted().toArray()),
+            Arrays.toString(Arrays.stream(reweightedTree.getEdgeIndices()).sorted().toArray()), "Same tree edge positions");
+        assertThrows(IllegalArgumentException.class, () -> new MSTQueryIndex(graph, reweightedTree),
+            "Same indices, but C-D has another weight here");
+        List<Edge> reversedEdges = new ArrayList<>(edges);
+        Collections.reverse(reversedEdges);
+        MSTQueryIndex reversed = new MSTQueryIndex(graph, KruskalAlgorithm.findMST(new Graph(4, nodes, reversedEdges)));
+        assertEquals(new Edge("C", "D", 7), reversed.bottleneckEdge("A", "E"), "Same tree, other edge order");
+        assertEquals(graph.indexOf("C"), index.lowestCommonAncestor(graph.indexOf("C"), graph.indexOf("E")),
+            "Rooted at A: C is an ancestor of E");
+        
+        // A disconnected graph has no MST; no pair is connected
+        Graph disconnected = new Graph(3, Arrays.asList("A", "B", "F"), Arrays.asList(new Edge("A", "B", 1)));
+        MSTQueryIndex forest = new MSTQueryIndex(disconnected, KruskalAlgorithm.findMST(disconnected));
+        assertNull(forest.bottleneckEdge("A", "F"));
+        assertEquals(-1, forest.lowestCommonAncestor(0, 2));
+        
+        // Against the offline path-max pass, one query at a time and batched
+        List<String> more = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            more.add("V" + i);
+        }
+        List<Edge> moreEdges = new ArrayList<>();
+        Random random = new Random(26);
+        for (int i = 1; i < more.size(); i++) {
+            moreEdges.add(new Edge(more.get(random.nextInt(i)), more.get(i), random.nextInt(30)));
+        }
+        for (int i = 0; i < 2000; i++) {
+            moreEdges.add(new Edge(more.get(random.nextInt(500)), more.get(random.nextInt(500)), random.nextInt(30)));
+        }
+        Graph big = new Graph(2, more, moreEdges);
+        MSTResult mst = PrimAlgorithm.findMST(big);
+        MSTQueryIndex bigIndex = new MSTQueryIndex(big, mst);
+        
+        int[] tree = mst.getEdgeIndices();
+        GraphStorage storage = big.getStorage();
+        int[] treeFrom = new int[tree.length];
+        int[] treeTo = new int[tree.length];
+        for (int i = 0; i < tree.length; i++) {
+            treeFrom[i] = storage.getEdgeFrom(tree[i]);
+            treeTo[i] = storage.getEdgeTo(tree[i]);
+        }
+        int[] from = new int[3000];
+        int[] to = new int[3000];
+        for (int q = 0; q < from.length; q++) {
+            from[q] = random.nextInt(500);
+            to[q] = random.nextInt(500);
+        }
+        int[] expected = ForestPathMax.query(500, treeFrom, treeTo, tree, tree.length, from, to, from.length,
+            (a, b) -> EdgeOrder.compare(storage, a, b));
+        int[] batched = bigIndex.pathMaxEdges(from, to);
+        for (int q = 0; q < from.length; q++) {
+            assertEquals(expected[q], batched[q]);
+            assertEquals(expected[q], bigIndex.pathMaxEdge(from[q], to[q]));
+        }
+        
+        MSTResult cycle = new MSTResult(Arrays.asList(edges.get(0), edges.get(1), edges.get(3)), 14, 0, 0);
+        assertThrows(IllegalArgumentException.class, () -> new MSTQueryIndex(graph, cycle));
+    }
+
+    @Test
+    @Order(27)
+    @DisplayName("Test 27: Delta input through MSTSolver")
+    public void test27_DeltaBatch() throws Exception {
+        List<String> lines = new ArrayList<>();
+        lines.add("{\"graphs\": [");
+        lines.add("  {\"id\": 1, \"nodes\": [\"A\", \"B\", \"C\", \"D\"], \"edges\": [");
+        lines.add("    {\"from\": \"A\", \"to\": \"B\", \"weight\": 1},");
+        lines.add("    {\"from\": \"B\", \"to\": \"C\", \"weight\": 2},");
+        lines.add("    {\"from\": \"C\", \"to\": \"D\", \"weight\": 3},");
+        lines.add("    {\"from\": \"A\", \"to\": \"D\", \"weight\": 9}]},");
+        lines.add("  {\"id\": 2, \"base_id\": 1, \"reweight_edges\": [{\"from\": \"A\", \"to\": \"D\", \"weight\": 2}]},");
+        for (int id = 10; id < 10 + GraphCache.DEFAULT_CAPACITY + 1; id++) {
+            lines.add("  {\"id\": " + id + ", \"nodes\": [\"X\", \"Y\"], \"edges\": [{\"from\": \"X\", \"to\": \"Y\", \"weight\": 1}]},");
+        }
+        lines.add("  {\"id\": 3, \"base_id\": 1, \"remove_edges\": [{\"from\": \"B\", \"to\": \"C\"}]},");
+        lines.add("  {\"id\": 4, \"base_id\": 2, \"add_nodes\": [\"E\"],");
+        lines.add("    \"add_edges\": [{\"from\": \"E\", \"to\": \"A\", \"weight\": 5}]}");
+        lines.add("]}");
+        Path input = Files.createTempFile("delta-batch", ".json");
+        Path output = Files.createTempFile("delta-batch", ".out.json");
+        Files.write(input, lines);
+        
+        // With several workers a delta is taken while its base is still being solved
+        for (String mode : Arrays.asList("--engine=auto", "--pipeline", "--pipeline --workers=4")) {
+            List<String> args = new ArrayList<>(Arrays.asList(input.toString(), output.toString()));
+            args.addAll(Arrays.asList(mode.split(" ")));
+            MSTSolver.main(args.toArray(new String[0]));
+            String json = new String(Files.readAllBytes(output));
+            assertFalse(resultBlock(json, 1).contains("\"incremental\""), mode + ": base is solved from scratch");
+            for (int id = 2; id <= 4; id++) {
+                String block = resultBlock(json, id);
+                assertTrue(block.contains("\"source\": \"incremental\""), mode + ": graph " + id);
+                assertTrue(block.contains("\"incremental\": {"), mode + ": graph " + id);
+                assertTrue(block.contains("\"verified\": true"), mode + ": graph " + id);
+            }
+        }
+        
+        // A delta must not share (or default to) its base's id
+        for (String delta : Arrays.asList("{\"base_id\": 1, \"add_nodes\": [\"E\"]}",
+                                          "{\"id\": 1, \"base_id\": 1, \"add_nodes\": [\"E\"]}")) {
+            Files.write(input, Arrays.asList(lines.get(0), lines.get(1), lines.get(2), lines.get(3), lines.get(4),
+                lines.get(5), "  " + delta, "]}"));
+            assertThrows(java.io.IOException.class, () -> SimpleJSONParser.parseGraphs(input.toString()), delta);
+        }
+        Files.delete(input);
+        Files.delete(output);
+    }
+
     // Helper methods
+    /**
+     * Text of one graph's entry in a results file
+     */
+    private String resultBlock(String json, int graphId) {
+        int start = json.indexOf("\"graph_id\": " + graphId + ",");
+        assertTrue(start != -1, "No result for graph " + graphId);
+        int end = json.indexOf("\"graph_id\": ", start + 1);
+        return json.substring(start, end == -1 ? json.length() : end);
+    }
+    
     private boolean isAcyclic(List<Edge> edges, List<String> nodes) {
         UnionFind uf = new UnionFind(nodes);
         for (Edge edge : edges) {